@@ -0,0 +1,73 @@
+package ru.unithack.bot.config;
+
+import com.pengrad.telegrambot.TelegramBot;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import okhttp3.ConnectionPool;
+import okhttp3.Dispatcher;
+import okhttp3.OkHttpClient;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Единый HTTP-клиент для всех обращений к Telegram: отправки сообщений, long polling
+ * и скачивания файлов. Все запросы идут на один хост, поэтому общий пул соединений
+ * с keep-alive избавляет от повторных TLS-рукопожатий, а лимит запросов на хост
+ * поднят под скорость рассылок.
+ */
+@Configuration
+public class TelegramConfig {
+
+    @Bean
+    public OkHttpClient telegramHttpClient(@Value("${app.telegram.http.max-idle-connections:16}") int maxIdleConnections,
+                                           @Value("${app.telegram.http.keep-alive-seconds:300}") long keepAliveSeconds,
+                                           @Value("${app.telegram.http.max-requests:64}") int maxRequests,
+                                           @Value("${app.telegram.http.max-requests-per-host:32}") int maxRequestsPerHost,
+                                           @Value("${app.telegram.http.connect-timeout-ms:10000}") long connectTimeoutMillis,
+                                           @Value("${app.telegram.http.write-timeout-ms:30000}") long writeTimeoutMillis,
+                                           @Value("${app.telegram.http.read-timeout-ms:75000}") long readTimeoutMillis,
+                                           MeterRegistry meterRegistry) {
+        Dispatcher dispatcher = new Dispatcher();
+        dispatcher.setMaxRequests(maxRequests);
+        dispatcher.setMaxRequestsPerHost(maxRequestsPerHost);
+        ConnectionPool connectionPool = new ConnectionPool(maxIdleConnections, keepAliveSeconds, TimeUnit.SECONDS);
+
+        Gauge.builder("bot.telegram.http.connections", connectionPool, ConnectionPool::connectionCount)
+                .description("Open connections to the Telegram API")
+                .tag("state", "total")
+                .register(meterRegistry);
+        Gauge.builder("bot.telegram.http.connections", connectionPool, ConnectionPool::idleConnectionCount)
+                .description("Open connections to the Telegram API")
+                .tag("state", "idle")
+                .register(meterRegistry);
+        Gauge.builder("bot.telegram.http.calls", dispatcher, Dispatcher::runningCallsCount)
+                .description("HTTP calls to the Telegram API")
+                .tag("state", "running")
+                .register(meterRegistry);
+        Gauge.builder("bot.telegram.http.calls", dispatcher, Dispatcher::queuedCallsCount)
+                .description("HTTP calls to the Telegram API")
+                .tag("state", "queued")
+                .register(meterRegistry);
+
+        // Таймаут чтения больше таймаута long polling, иначе getUpdates будет обрываться
+        return new OkHttpClient.Builder()
+                .dispatcher(dispatcher)
+                .connectionPool(connectionPool)
+                .connectTimeout(Duration.ofMillis(connectTimeoutMillis))
+                .writeTimeout(Duration.ofMillis(writeTimeoutMillis))
+                .readTimeout(Duration.ofMillis(readTimeoutMillis))
+                .retryOnConnectionFailure(true)
+                .build();
+    }
+
+    @Bean
+    public TelegramBot telegramBot(@Value("${app.telegram-token}") String telegramToken, OkHttpClient telegramHttpClient) {
+        return new TelegramBot.Builder(telegramToken)
+                .okHttpClient(telegramHttpClient)
+                .build();
+    }
+}
@@ -0,0 +1,74 @@
+package ru.unithack.bot.controller;
+
+import com.pengrad.telegrambot.model.Update;
+import com.pengrad.telegrambot.utility.BotUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RestController;
+import ru.unithack.bot.service.UpdateInboxService;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.List;
+
+/**
+ * Принимает обновления от Telegram в режиме webhook.
+ * Обновление сохраняется во входящую очередь и передается диспетчеру, ответ Telegram
+ * отправляется не дожидаясь обработки. Если сохранить обновление не удалось, Telegram повторит доставку.
+ */
+@RestController
+@ConditionalOnProperty(name = "app.telegram.mode", havingValue = "webhook")
+public class TelegramWebhookController {
+
+    private static final Logger logger = LoggerFactory.getLogger(TelegramWebhookController.class);
+    private static final String SECRET_TOKEN_HEADER = "X-Telegram-Bot-Api-Secret-Token";
+
+    private final UpdateInboxService updateInboxService;
+    private final byte[] secretToken;
+
+    @Autowired
+    public TelegramWebhookController(UpdateInboxService updateInboxService,
+                                     @Value("${app.telegram.webhook.secret-token:}") String secretToken) {
+        if (secretToken == null || secretToken.isBlank()) {
+            throw new IllegalStateException("app.telegram.webhook.secret-token must be set in webhook mode");
+        }
+        this.updateInboxService = updateInboxService;
+        this.secretToken = secretToken.getBytes(StandardCharsets.UTF_8);
+    }
+
+    @PostMapping("${app.telegram.webhook.path:/telegram/webhook}")
+    public ResponseEntity<Void> onUpdate(@RequestHeader(value = SECRET_TOKEN_HEADER, required = false) String token,
+                                         @RequestBody String body) {
+        if (token == null || !MessageDigest.isEqual(secretToken, token.getBytes(StandardCharsets.UTF_8))) {
+            logger.warn("Rejected webhook request with invalid secret token");
+            return ResponseEntity.status(401).build();
+        }
+
+        Update update;
+        try {
+            update = BotUtils.parseUpdate(body);
+        } catch (Exception e) {
+            logger.warn("Rejected webhook request with malformed update: {}", e.getMessage());
+            return ResponseEntity.badRequest().build();
+        }
+
+        if (update == null || update.updateId() == null) {
+            return ResponseEntity.badRequest().build();
+        }
+
+        try {
+            updateInboxService.accept(List.of(update));
+        } catch (Exception e) {
+            logger.error("Failed to store update {} in the inbox", update.updateId(), e);
+            return ResponseEntity.status(503).build();
+        }
+        return ResponseEntity.ok().build();
+    }
+}
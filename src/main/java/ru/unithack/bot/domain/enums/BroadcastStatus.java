@@ -0,0 +1,6 @@
+package ru.unithack.bot.domain.enums;
+
+public enum BroadcastStatus {
+    RUNNING,
+    COMPLETED
+}
@@ -0,0 +1,8 @@
+package ru.unithack.bot.domain.enums;
+
+public enum DeliveryStatus {
+    PENDING,
+    SENDING,
+    SENT,
+    FAILED
+}
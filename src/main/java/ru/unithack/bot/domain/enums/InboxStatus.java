@@ -0,0 +1,9 @@
+package ru.unithack.bot.domain.enums;
+
+public enum InboxStatus {
+    PENDING,
+    PROCESSING,
+    PROCESSED,
+    FAILED,
+    REJECTED
+}
@@ -0,0 +1,8 @@
+package ru.unithack.bot.domain.enums;
+
+public enum OutboxStatus {
+    PENDING,
+    SENDING,
+    SENT,
+    FAILED
+}
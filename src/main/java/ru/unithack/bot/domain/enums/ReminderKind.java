@@ -0,0 +1,21 @@
+package ru.unithack.bot.domain.enums;
+
+import java.time.Duration;
+
+public enum ReminderKind {
+    DAY_BEFORE(Duration.ofHours(24)),
+    HOUR_BEFORE(Duration.ofHours(1));
+
+    private final Duration offset;
+
+    ReminderKind(Duration offset) {
+        this.offset = offset;
+    }
+
+    /**
+     * За сколько до начала мастер-класса отправляется напоминание
+     */
+    public Duration getOffset() {
+        return offset;
+    }
+}
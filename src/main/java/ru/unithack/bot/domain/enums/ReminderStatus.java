@@ -0,0 +1,7 @@
+package ru.unithack.bot.domain.enums;
+
+public enum ReminderStatus {
+    PENDING,
+    SENT,
+    SKIPPED
+}
@@ -0,0 +1,70 @@
+package ru.unithack.bot.domain.model;
+
+import jakarta.persistence.*;
+import ru.unithack.bot.domain.enums.DeliveryStatus;
+
+import java.time.LocalDateTime;
+
+/**
+ * Состояние доставки рассылки одному получателю
+ */
+@Entity
+@Table(name = "broadcast_deliveries",
+        uniqueConstraints = @UniqueConstraint(name = "uk_broadcast_delivery_job_user", columnNames = {"job_id", "user_id"}),
+        indexes = @Index(name = "idx_broadcast_delivery_job_status", columnList = "job_id, status, id"))
+public class BroadcastDelivery {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "job_id", nullable = false)
+    private Long jobId;
+
+    @Column(name = "user_id", nullable = false)
+    private Long userId;
+
+    @Column(name = "chat_id", nullable = false)
+    private Long chatId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "status", nullable = false)
+    private DeliveryStatus status;
+
+    @Column(name = "sent_at")
+    private LocalDateTime sentAt;
+
+    public BroadcastDelivery() {
+    }
+
+    public BroadcastDelivery(Long jobId, Long userId, Long chatId) {
+        this.jobId = jobId;
+        this.userId = userId;
+        this.chatId = chatId;
+        this.status = DeliveryStatus.PENDING;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public Long getJobId() {
+        return jobId;
+    }
+
+    public Long getUserId() {
+        return userId;
+    }
+
+    public Long getChatId() {
+        return chatId;
+    }
+
+    public DeliveryStatus getStatus() {
+        return status;
+    }
+
+    public LocalDateTime getSentAt() {
+        return sentAt;
+    }
+}
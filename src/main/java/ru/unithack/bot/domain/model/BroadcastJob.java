@@ -0,0 +1,149 @@
+package ru.unithack.bot.domain.model;
+
+import jakarta.persistence.*;
+import ru.unithack.bot.domain.enums.BroadcastStatus;
+
+import java.time.LocalDateTime;
+
+/**
+ * Рассылка новости всем пользователям. Получатели выбираются порциями по возрастанию
+ * user_id, cursor хранит последний обработанный user_id, поэтому после перезапуска
+ * рассылка продолжается с того же места.
+ */
+@Entity
+@Table(name = "broadcast_jobs")
+public class BroadcastJob {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "news_post_id")
+    private NewsPost newsPost;
+
+    @Column(name = "text", nullable = false, length = 4096)
+    private String text;
+
+    @Column(name = "author_chat_id", nullable = false)
+    private Long authorChatId;
+
+    @Column(name = "progress_message_id")
+    private Integer progressMessageId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "status", nullable = false)
+    private BroadcastStatus status;
+
+    @Column(name = "cursor_user_id", nullable = false)
+    private Long cursorUserId;
+
+    @Column(name = "recipients_exhausted", nullable = false)
+    private boolean recipientsExhausted;
+
+    @Column(name = "total_recipients", nullable = false)
+    private int totalRecipients;
+
+    // Итоги рассылки увеличиваются из колбэков отправки, пока задача сохраняется с новым курсором,
+    // поэтому сохранение задачи их не записывает
+    @Column(name = "sent_count", nullable = false, updatable = false)
+    private int sentCount;
+
+    @Column(name = "failed_count", nullable = false, updatable = false)
+    private int failedCount;
+
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+
+    @Column(name = "finished_at")
+    private LocalDateTime finishedAt;
+
+    public BroadcastJob() {
+    }
+
+    public BroadcastJob(NewsPost newsPost, String text, Long authorChatId, int totalRecipients) {
+        this.newsPost = newsPost;
+        this.text = text;
+        this.authorChatId = authorChatId;
+        this.totalRecipients = totalRecipients;
+        this.status = BroadcastStatus.RUNNING;
+        this.cursorUserId = 0L;
+        this.createdAt = LocalDateTime.now();
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public NewsPost getNewsPost() {
+        return newsPost;
+    }
+
+    public String getText() {
+        return text;
+    }
+
+    public Long getAuthorChatId() {
+        return authorChatId;
+    }
+
+    public Integer getProgressMessageId() {
+        return progressMessageId;
+    }
+
+    public void setProgressMessageId(Integer progressMessageId) {
+        this.progressMessageId = progressMessageId;
+    }
+
+    public BroadcastStatus getStatus() {
+        return status;
+    }
+
+    public void setStatus(BroadcastStatus status) {
+        this.status = status;
+    }
+
+    public Long getCursorUserId() {
+        return cursorUserId;
+    }
+
+    public void setCursorUserId(Long cursorUserId) {
+        this.cursorUserId = cursorUserId;
+    }
+
+    public boolean isRecipientsExhausted() {
+        return recipientsExhausted;
+    }
+
+    public void setRecipientsExhausted(boolean recipientsExhausted) {
+        this.recipientsExhausted = recipientsExhausted;
+    }
+
+    public int getTotalRecipients() {
+        return totalRecipients;
+    }
+
+    public void setTotalRecipients(int totalRecipients) {
+        this.totalRecipients = totalRecipients;
+    }
+
+    public int getSentCount() {
+        return sentCount;
+    }
+
+    public int getFailedCount() {
+        return failedCount;
+    }
+
+    public LocalDateTime getCreatedAt() {
+        return createdAt;
+    }
+
+    public LocalDateTime getFinishedAt() {
+        return finishedAt;
+    }
+
+    public void setFinishedAt(LocalDateTime finishedAt) {
+        this.finishedAt = finishedAt;
+    }
+}
@@ -0,0 +1,103 @@
+package ru.unithack.bot.domain.model;
+
+import jakarta.persistence.*;
+import org.springframework.data.domain.Persistable;
+import ru.unithack.bot.domain.enums.InboxStatus;
+
+import java.time.LocalDateTime;
+
+/**
+ * Входящее обновление Telegram, сохраненное до подтверждения его получения.
+ * Ключ - update_id, поэтому повторная доставка того же обновления не создает дубликат.
+ */
+@Entity
+@Table(name = "update_inbox", indexes = {
+        @Index(name = "idx_update_inbox_status", columnList = "status, update_id")
+})
+public class InboxUpdate implements Persistable<Integer> {
+
+    @Id
+    @Column(name = "update_id")
+    private Integer updateId;
+
+    @Column(name = "payload", nullable = false, columnDefinition = "text")
+    private String payload;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "status", nullable = false)
+    private InboxStatus status;
+
+    @Column(name = "received_at", nullable = false)
+    private LocalDateTime receivedAt;
+
+    @Column(name = "claimed_at")
+    private LocalDateTime claimedAt;
+
+    @Column(name = "processed_at")
+    private LocalDateTime processedAt;
+
+    @Transient
+    private boolean isNew;
+
+    public InboxUpdate() {
+    }
+
+    public InboxUpdate(Integer updateId, String payload) {
+        this.updateId = updateId;
+        this.payload = payload;
+        this.status = InboxStatus.PENDING;
+        this.receivedAt = LocalDateTime.now();
+        this.isNew = true;
+    }
+
+    @Override
+    public Integer getId() {
+        return updateId;
+    }
+
+    /**
+     * Новая запись сохраняется сразу через persist, без предварительного select
+     */
+    @Override
+    public boolean isNew() {
+        return isNew;
+    }
+
+    @PostLoad
+    @PostPersist
+    void markNotNew() {
+        this.isNew = false;
+    }
+
+    public Integer getUpdateId() {
+        return updateId;
+    }
+
+    public String getPayload() {
+        return payload;
+    }
+
+    public InboxStatus getStatus() {
+        return status;
+    }
+
+    public void setStatus(InboxStatus status) {
+        this.status = status;
+    }
+
+    public LocalDateTime getReceivedAt() {
+        return receivedAt;
+    }
+
+    public LocalDateTime getClaimedAt() {
+        return claimedAt;
+    }
+
+    public LocalDateTime getProcessedAt() {
+        return processedAt;
+    }
+
+    public void setProcessedAt(LocalDateTime processedAt) {
+        this.processedAt = processedAt;
+    }
+}
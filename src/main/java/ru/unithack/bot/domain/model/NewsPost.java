@@ -20,6 +20,10 @@ public class NewsPost {
     @Column(name = "image_path")
     private String imagePath;
 
+    // file_id изображения на серверах Telegram: после первой загрузки картинка рассылается по нему
+    @Column(name = "image_file_id")
+    private String imageFileId;
+
     @Column(name = "created_at", nullable = false)
     private LocalDateTime createdAt;
 
@@ -70,6 +74,18 @@ public class NewsPost {
         this.imagePath = imagePath;
     }
 
+    public String getImageFileId() {
+        return imageFileId;
+    }
+
+    public void setImageFileId(String imageFileId) {
+        this.imageFileId = imageFileId;
+    }
+
+    public boolean hasImage() {
+        return imageFileId != null || imagePath != null;
+    }
+
     public LocalDateTime getCreatedAt() {
         return createdAt;
     }
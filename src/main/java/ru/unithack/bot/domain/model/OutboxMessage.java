@@ -0,0 +1,108 @@
+package ru.unithack.bot.domain.model;
+
+import jakarta.persistence.*;
+import ru.unithack.bot.domain.enums.OutboxStatus;
+
+import java.time.LocalDateTime;
+
+/**
+ * Уведомление, записанное в той же транзакции, что и изменение, о котором оно сообщает.
+ * Отправляется фоновым обработчиком только после фиксации транзакции.
+ */
+@Entity
+@Table(name = "notification_outbox", indexes = {
+        @Index(name = "idx_notification_outbox_status", columnList = "status, id"),
+        @Index(name = "idx_notification_outbox_digest", columnList = "status, urgent, chat_id")
+})
+public class OutboxMessage {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "chat_id", nullable = false)
+    private Long chatId;
+
+    @Column(name = "text", nullable = false, length = 4096)
+    private String text;
+
+    @Column(name = "bulk", nullable = false)
+    private boolean bulk;
+
+    // Несрочные уведомления одного чата объединяются в одно сообщение
+    @Column(name = "urgent", nullable = false, columnDefinition = "boolean default true")
+    private boolean urgent = true;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "status", nullable = false)
+    private OutboxStatus status;
+
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+
+    // Отметка захвата отправщиком: по ней он находит свои записи, а зависшие возвращаются в очередь
+    @Column(name = "claim_token", length = 36)
+    private String claimToken;
+
+    @Column(name = "claimed_at")
+    private LocalDateTime claimedAt;
+
+    @Column(name = "sent_at")
+    private LocalDateTime sentAt;
+
+    public OutboxMessage() {
+    }
+
+    public OutboxMessage(Long chatId, String text, boolean bulk, boolean urgent) {
+        this.chatId = chatId;
+        this.text = text;
+        this.bulk = bulk;
+        this.urgent = urgent;
+        this.status = OutboxStatus.PENDING;
+        this.createdAt = LocalDateTime.now();
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public Long getChatId() {
+        return chatId;
+    }
+
+    public String getText() {
+        return text;
+    }
+
+    public boolean isBulk() {
+        return bulk;
+    }
+
+    public boolean isUrgent() {
+        return urgent;
+    }
+
+    public OutboxStatus getStatus() {
+        return status;
+    }
+
+    public void setStatus(OutboxStatus status) {
+        this.status = status;
+    }
+
+    public LocalDateTime getCreatedAt() {
+        return createdAt;
+    }
+
+    public LocalDateTime getClaimedAt() {
+        return claimedAt;
+    }
+
+    public LocalDateTime getSentAt() {
+        return sentAt;
+    }
+
+    public void setSentAt(LocalDateTime sentAt) {
+        this.sentAt = sentAt;
+    }
+}
@@ -5,7 +5,8 @@ import jakarta.persistence.*;
 import java.util.Objects;
 
 @Entity
-@Table(name = "roles_users")
+@Table(name = "roles_users",
+        indexes = @Index(name = "idx_roles_users_user_role", columnList = "user_id, role_id"))
 public class RoleUser {
     @Id
     @GeneratedValue(strategy = GenerationType.SEQUENCE)
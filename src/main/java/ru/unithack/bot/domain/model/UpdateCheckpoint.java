@@ -0,0 +1,39 @@
+package ru.unithack.bot.domain.model;
+
+import jakarta.persistence.*;
+
+/**
+ * Последний update_id, надежно сохраненный во входящую очередь.
+ * С него продолжается получение обновлений после перезапуска.
+ */
+@Entity
+@Table(name = "update_checkpoints")
+public class UpdateCheckpoint {
+
+    @Id
+    @Column(name = "name")
+    private String name;
+
+    @Column(name = "last_update_id", nullable = false)
+    private Integer lastUpdateId;
+
+    public UpdateCheckpoint() {
+    }
+
+    public UpdateCheckpoint(String name, Integer lastUpdateId) {
+        this.name = name;
+        this.lastUpdateId = lastUpdateId;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public Integer getLastUpdateId() {
+        return lastUpdateId;
+    }
+
+    public void setLastUpdateId(Integer lastUpdateId) {
+        this.lastUpdateId = lastUpdateId;
+    }
+}
@@ -26,6 +26,10 @@ public class UserInfo {
     @Column(name = "chat_id")
     private Long chatId;
 
+    // false, если пользователь заблокировал бота: такие чаты исключаются из рассылок
+    @Column(name = "reachable", nullable = false, columnDefinition = "boolean default true")
+    private boolean reachable = true;
+
     @Column(name = "created_at", nullable = false)
     private ZonedDateTime createdAt;
 
@@ -121,6 +125,14 @@ public class UserInfo {
         this.chatId = chatId;
     }
 
+    public boolean isReachable() {
+        return reachable;
+    }
+
+    public void setReachable(boolean reachable) {
+        this.reachable = reachable;
+    }
+
     public ZonedDateTime getCreatedAt() {
         return createdAt;
     }
@@ -1,6 +1,7 @@
 package ru.unithack.bot.domain.model;
 
 import jakarta.persistence.*;
+import org.hibernate.annotations.ColumnDefault;
 
 import java.time.LocalDateTime;
 import java.util.HashSet;
@@ -33,6 +34,21 @@ public class Workshop {
     @Column(nullable = false)
     private boolean active = true;
 
+    // Число участников и длина листа ожидания. Меняются вместе с регистрациями под блокировкой
+    // строки мастер-класса (WorkshopRepository.adjustCounters), редактирование мастер-класса их не трогает
+    @Column(name = "registered_count", nullable = false, updatable = false)
+    @ColumnDefault("0")
+    private int registeredCount;
+
+    @Column(name = "waitlist_count", nullable = false, updatable = false)
+    @ColumnDefault("0")
+    private int waitlistCount;
+
+    // Порядковый номер для следующей записи в лист ожидания, не сбрасывается при опустошении листа
+    @Column(name = "next_waitlist_sequence", nullable = false, updatable = false)
+    @ColumnDefault("1")
+    private int nextWaitlistSequence = 1;
+
     @OneToMany(mappedBy = "workshop", cascade = CascadeType.ALL, orphanRemoval = true)
     private Set<WorkshopRegistration> registrations = new HashSet<>();
 
@@ -108,15 +124,15 @@ public class Workshop {
     }
 
     public int getRegisteredCount() {
-        return (int) registrations.stream()
-                .filter(registration -> !registration.isWaitlist())
-                .count();
+        return registeredCount;
     }
 
     public int getWaitlistCount() {
-        return (int) registrations.stream()
-                .filter(WorkshopRegistration::isWaitlist)
-                .count();
+        return waitlistCount;
+    }
+
+    public int getNextWaitlistSequence() {
+        return nextWaitlistSequence;
     }
 
     @Override
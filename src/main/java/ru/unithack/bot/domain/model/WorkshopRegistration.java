@@ -6,7 +6,9 @@ import java.time.LocalDateTime;
 import java.util.Objects;
 
 @Entity
-@Table(name = "workshop_registrations")
+@Table(name = "workshop_registrations",
+        uniqueConstraints = @UniqueConstraint(name = "uk_workshop_registration_user", columnNames = {"workshop_id", "user_id"}),
+        indexes = @Index(name = "idx_workshop_registration_waitlist", columnList = "workshop_id, waitlist, waitlist_position"))
 public class WorkshopRegistration {
 
     @Id
@@ -33,7 +35,14 @@ public class WorkshopRegistration {
     @Column
     private LocalDateTime confirmationDeadline;
     
-    @Column
+    // Порядковый номер постановки в лист ожидания, растет в пределах мастер-класса и не меняется
+    // при выходе других участников из очереди. Колонка сохранила прежнее имя: позиции,
+    // записанные до перехода на порядковые номера, остаются корректными номерами
+    @Column(name = "waitlist_position")
+    private Integer waitlistSequence;
+
+    // Позиция в листе ожидания для отображения, вычисляется при чтении
+    @Transient
     private Integer waitlistPosition;
     
     @Column(nullable = false)
@@ -105,6 +114,14 @@ public class WorkshopRegistration {
         this.confirmationDeadline = confirmationDeadline;
     }
     
+    public Integer getWaitlistSequence() {
+        return waitlistSequence;
+    }
+    
+    public void setWaitlistSequence(Integer waitlistSequence) {
+        this.waitlistSequence = waitlistSequence;
+    }
+    
     public Integer getWaitlistPosition() {
         return waitlistPosition;
     }
@@ -160,7 +177,7 @@ public class WorkshopRegistration {
                 ", waitlist=" + waitlist +
                 ", pendingConfirmation=" + pendingConfirmation +
                 ", confirmationDeadline=" + confirmationDeadline +
-                ", waitlistPosition=" + waitlistPosition +
+                ", waitlistSequence=" + waitlistSequence +
                 ", attended=" + attended +
                 ", attendanceTime=" + attendanceTime +
                 ", markedByUserId=" + markedByUserId +
@@ -0,0 +1,81 @@
+package ru.unithack.bot.domain.model;
+
+import jakarta.persistence.*;
+import ru.unithack.bot.domain.enums.ReminderKind;
+import ru.unithack.bot.domain.enums.ReminderStatus;
+
+import java.time.LocalDateTime;
+
+/**
+ * Запись журнала напоминаний: одно напоминание определенного вида для мастер-класса.
+ * Статус меняется условным обновлением, поэтому напоминание отправляется ровно один раз
+ */
+@Entity
+@Table(name = "workshop_reminders",
+        uniqueConstraints = @UniqueConstraint(name = "uk_workshop_reminder_kind", columnNames = {"workshop_id", "kind"}),
+        indexes = @Index(name = "idx_workshop_reminder_status", columnList = "status, due_at"))
+public class WorkshopReminder {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "workshop_id", nullable = false)
+    private Long workshopId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "kind", nullable = false)
+    private ReminderKind kind;
+
+    @Column(name = "due_at", nullable = false)
+    private LocalDateTime dueAt;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "status", nullable = false)
+    private ReminderStatus status;
+
+    @Column(name = "sent_at")
+    private LocalDateTime sentAt;
+
+    public WorkshopReminder() {
+    }
+
+    public WorkshopReminder(Long workshopId, ReminderKind kind, LocalDateTime dueAt, ReminderStatus status) {
+        this.workshopId = workshopId;
+        this.kind = kind;
+        this.dueAt = dueAt;
+        this.status = status;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public Long getWorkshopId() {
+        return workshopId;
+    }
+
+    public ReminderKind getKind() {
+        return kind;
+    }
+
+    public LocalDateTime getDueAt() {
+        return dueAt;
+    }
+
+    public void setDueAt(LocalDateTime dueAt) {
+        this.dueAt = dueAt;
+    }
+
+    public ReminderStatus getStatus() {
+        return status;
+    }
+
+    public void setStatus(ReminderStatus status) {
+        this.status = status;
+    }
+
+    public LocalDateTime getSentAt() {
+        return sentAt;
+    }
+}
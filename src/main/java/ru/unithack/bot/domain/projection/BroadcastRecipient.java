@@ -0,0 +1,7 @@
+package ru.unithack.bot.domain.projection;
+
+/**
+ * Получатель рассылки: только идентификатор пользователя и его чат
+ */
+public record BroadcastRecipient(Long userId, Long chatId) {
+}
@@ -0,0 +1,9 @@
+package ru.unithack.bot.domain.projection;
+
+import java.time.LocalDateTime;
+
+/**
+ * Срок подтверждения участия, общий для всех, кому одновременно предложили место на мастер-классе
+ */
+public record ConfirmationDeadline(Long workshopId, LocalDateTime deadline) {
+}
@@ -0,0 +1,7 @@
+package ru.unithack.bot.domain.projection;
+
+/**
+ * Строка справочника пользователей: данные профиля и роли одной строкой через запятую
+ */
+public record UserDirectoryEntry(Long userId, String name, String username, Long chatId, String roles) {
+}
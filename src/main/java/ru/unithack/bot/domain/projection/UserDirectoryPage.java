@@ -0,0 +1,17 @@
+package ru.unithack.bot.domain.projection;
+
+import java.util.List;
+
+/**
+ * Страница справочника пользователей, упорядоченная по user_id
+ */
+public record UserDirectoryPage(List<UserDirectoryEntry> entries, boolean hasPrevious, boolean hasNext) {
+
+    public Long firstUserId() {
+        return entries.get(0).userId();
+    }
+
+    public Long lastUserId() {
+        return entries.get(entries.size() - 1).userId();
+    }
+}
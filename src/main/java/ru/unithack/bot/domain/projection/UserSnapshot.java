@@ -0,0 +1,16 @@
+package ru.unithack.bot.domain.projection;
+
+import ru.unithack.bot.domain.enums.UserRole;
+
+import java.util.Set;
+
+/**
+ * Данные пользователя, нужные при разборе почти каждого обновления: кто пишет боту, с какими ролями
+ * и считается ли его чат доступным для отправки
+ */
+public record UserSnapshot(Long id, Long chatId, String name, String username, boolean reachable, Set<String> roles) {
+
+    public boolean hasRole(UserRole userRole) {
+        return roles.contains(userRole.name());
+    }
+}
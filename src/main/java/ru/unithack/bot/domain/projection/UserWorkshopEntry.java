@@ -0,0 +1,12 @@
+package ru.unithack.bot.domain.projection;
+
+import java.time.LocalDateTime;
+
+/**
+ * Запись пользователя на мастер-класс для /my_workshops: мастер-класс, его счетчики
+ * и место пользователя в листе ожидания
+ * @param waitlistPosition позиция в листе ожидания, null для подтвержденных участников
+ */
+public record UserWorkshopEntry(Long workshopId, String title, LocalDateTime startTime, int capacity,
+                                int registeredCount, int waitlistCount, boolean waitlist, Long waitlistPosition) {
+}
@@ -0,0 +1,15 @@
+package ru.unithack.bot.domain.projection;
+
+import java.time.LocalDateTime;
+
+/**
+ * Строка каталога мастер-классов для /workshops вместе с записью текущего пользователя
+ * @param waitlist null, если пользователь не записан; true - в листе ожидания; false - участник
+ */
+public record WorkshopCatalogEntry(Long workshopId, String title, LocalDateTime startTime, int capacity,
+                                   int registeredCount, Boolean waitlist) {
+
+    public boolean isEnrolled() {
+        return waitlist != null;
+    }
+}
@@ -0,0 +1,50 @@
+package ru.unithack.bot.infrastructure.repository;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+import ru.unithack.bot.domain.enums.DeliveryStatus;
+import ru.unithack.bot.domain.model.BroadcastDelivery;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface BroadcastDeliveryRepository extends JpaRepository<BroadcastDelivery, Long> {
+
+    @Query("SELECT d FROM BroadcastDelivery d WHERE d.jobId = :jobId AND d.status = ru.unithack.bot.domain.enums.DeliveryStatus.PENDING " +
+           "AND d.id > :afterId ORDER BY d.id ASC")
+    List<BroadcastDelivery> findPendingAfter(Long jobId, Long afterId, Pageable pageable);
+
+    /**
+     * Отмечает доставки, переданные в очередь отправки
+     */
+    @Transactional
+    @Modifying
+    @Query("UPDATE BroadcastDelivery d SET d.status = ru.unithack.bot.domain.enums.DeliveryStatus.SENDING " +
+           "WHERE d.id IN :ids AND d.status = ru.unithack.bot.domain.enums.DeliveryStatus.PENDING")
+    int markSending(Collection<Long> ids);
+
+    /**
+     * Завершает доставку, если она еще не завершена
+     * @return 1, если статус изменен этим вызовом
+     */
+    @Transactional
+    @Modifying
+    @Query("UPDATE BroadcastDelivery d SET d.status = :status, d.sentAt = :sentAt " +
+           "WHERE d.id = :id AND d.status = ru.unithack.bot.domain.enums.DeliveryStatus.SENDING")
+    int complete(Long id, DeliveryStatus status, LocalDateTime sentAt);
+
+    /**
+     * Возвращает в PENDING доставки, переданные в очередь отправки до перезапуска и не завершенные
+     */
+    @Transactional
+    @Modifying
+    @Query("UPDATE BroadcastDelivery d SET d.status = ru.unithack.bot.domain.enums.DeliveryStatus.PENDING " +
+           "WHERE d.jobId = :jobId AND d.status = ru.unithack.bot.domain.enums.DeliveryStatus.SENDING")
+    int requeueInterrupted(Long jobId);
+}
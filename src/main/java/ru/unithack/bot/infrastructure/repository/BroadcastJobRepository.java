@@ -0,0 +1,32 @@
+package ru.unithack.bot.infrastructure.repository;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+import ru.unithack.bot.domain.enums.BroadcastStatus;
+import ru.unithack.bot.domain.model.BroadcastJob;
+
+import java.util.List;
+
+@Repository
+public interface BroadcastJobRepository extends JpaRepository<BroadcastJob, Long> {
+
+    List<BroadcastJob> findByStatusOrderByIdAsc(BroadcastStatus status);
+
+    @Transactional
+    @Modifying
+    @Query("UPDATE BroadcastJob j SET j.sentCount = j.sentCount + 1 WHERE j.id = :id")
+    void incrementSent(Long id);
+
+    @Transactional
+    @Modifying
+    @Query("UPDATE BroadcastJob j SET j.failedCount = j.failedCount + 1 WHERE j.id = :id")
+    void incrementFailed(Long id);
+
+    @Transactional
+    @Modifying
+    @Query("UPDATE BroadcastJob j SET j.progressMessageId = :messageId WHERE j.id = :id")
+    void updateProgressMessageId(Long id, Integer messageId);
+}
@@ -0,0 +1,59 @@
+package ru.unithack.bot.infrastructure.repository;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+import ru.unithack.bot.domain.enums.InboxStatus;
+import ru.unithack.bot.domain.model.InboxUpdate;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface InboxUpdateRepository extends JpaRepository<InboxUpdate, Integer> {
+
+    @Query("SELECT u.updateId FROM InboxUpdate u WHERE u.updateId IN :updateIds")
+    List<Integer> findExistingIds(Collection<Integer> updateIds);
+
+    @Query("SELECT u FROM InboxUpdate u WHERE u.status = :status AND u.updateId > :afterUpdateId ORDER BY u.updateId ASC")
+    List<InboxUpdate> findByStatusAfter(InboxStatus status, Integer afterUpdateId, Pageable pageable);
+
+    /**
+     * Забирает обновление в обработку. Обновляется только запись в статусе PENDING,
+     * поэтому одно и то же обновление не будет обработано дважды
+     * @return 1, если обновление захвачено
+     */
+    @Transactional
+    @Modifying
+    @Query("UPDATE InboxUpdate u SET u.status = ru.unithack.bot.domain.enums.InboxStatus.PROCESSING, " +
+           "u.claimedAt = :claimedAt " +
+           "WHERE u.updateId = :updateId AND u.status = ru.unithack.bot.domain.enums.InboxStatus.PENDING")
+    int claim(Integer updateId, LocalDateTime claimedAt);
+
+    @Transactional
+    @Modifying
+    @Query("UPDATE InboxUpdate u SET u.status = :status, u.processedAt = :processedAt WHERE u.updateId = :updateId")
+    int complete(Integer updateId, InboxStatus status, LocalDateTime processedAt);
+
+    /**
+     * Возвращает в очередь обновления, захваченные раньше claimedBefore и так и не завершенные.
+     * Захват фиксируется вместе с изменениями обработчика, поэтому повтор их не удвоит.
+     * Записи с действующей арендой принадлежат работающим экземплярам и не трогаются
+     */
+    @Transactional
+    @Modifying
+    @Query("UPDATE InboxUpdate u SET u.status = ru.unithack.bot.domain.enums.InboxStatus.PENDING " +
+           "WHERE u.status = ru.unithack.bot.domain.enums.InboxStatus.PROCESSING " +
+           "AND (u.claimedAt IS NULL OR u.claimedAt < :claimedBefore)")
+    int releaseExpiredClaims(LocalDateTime claimedBefore);
+
+    @Transactional
+    @Modifying
+    @Query("DELETE FROM InboxUpdate u WHERE u.status NOT IN (ru.unithack.bot.domain.enums.InboxStatus.PENDING, " +
+           "ru.unithack.bot.domain.enums.InboxStatus.PROCESSING) AND u.processedAt < :before")
+    int deleteCompletedBefore(LocalDateTime before);
+}
@@ -1,8 +1,10 @@
 package ru.unithack.bot.infrastructure.repository;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 import ru.unithack.bot.domain.model.NewsPost;
 import ru.unithack.bot.domain.model.User;
 import ru.unithack.bot.domain.model.Workshop;
@@ -20,4 +22,9 @@ public interface NewsPostRepository extends JpaRepository<NewsPost, Long> {
            "(SELECT wr.workshop FROM WorkshopRegistration wr WHERE wr.user = :user AND wr.waitlist = false AND wr.pendingConfirmation = false) " +
            "ORDER BY np.createdAt DESC")
     List<NewsPost> findAllRelevantForUser(@Param("user") User user);
-} 
\ No newline at end of file
+
+    @Transactional
+    @Modifying
+    @Query("UPDATE NewsPost np SET np.imageFileId = :fileId WHERE np.id = :id")
+    void updateImageFileId(@Param("id") Long id, @Param("fileId") String fileId);
+}
@@ -0,0 +1,95 @@
+package ru.unithack.bot.infrastructure.repository;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+import ru.unithack.bot.domain.enums.OutboxStatus;
+import ru.unithack.bot.domain.model.OutboxMessage;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface OutboxMessageRepository extends JpaRepository<OutboxMessage, Long> {
+
+    @Query("SELECT m FROM OutboxMessage m WHERE m.status = ru.unithack.bot.domain.enums.OutboxStatus.PENDING " +
+           "AND m.urgent = true ORDER BY m.id ASC")
+    List<OutboxMessage> findPendingUrgent(Pageable pageable);
+
+    /**
+     * Чаты, в которых самое старое несрочное уведомление ждет дольше окна объединения
+     */
+    @Query("SELECT DISTINCT m.chatId FROM OutboxMessage m WHERE m.status = ru.unithack.bot.domain.enums.OutboxStatus.PENDING " +
+           "AND m.urgent = false AND m.createdAt <= :createdBefore")
+    List<Long> findDigestChats(LocalDateTime createdBefore, Pageable pageable);
+
+    @Query("SELECT m FROM OutboxMessage m WHERE m.status = ru.unithack.bot.domain.enums.OutboxStatus.PENDING " +
+           "AND m.urgent = false AND m.chatId IN :chatIds ORDER BY m.id ASC")
+    List<OutboxMessage> findPendingDigest(Collection<Long> chatIds);
+
+    /**
+     * Несрочные уведомления чатов, записанные раньше beforeId: они должны уйти до срочных
+     */
+    @Query("SELECT m FROM OutboxMessage m WHERE m.status = ru.unithack.bot.domain.enums.OutboxStatus.PENDING " +
+           "AND m.urgent = false AND m.chatId IN :chatIds AND m.id < :beforeId ORDER BY m.id ASC")
+    List<OutboxMessage> findPendingDigestBefore(Collection<Long> chatIds, Long beforeId);
+
+    @Query("SELECT MIN(m.createdAt) FROM OutboxMessage m WHERE m.status = ru.unithack.bot.domain.enums.OutboxStatus.PENDING " +
+           "AND m.urgent = false")
+    Optional<LocalDateTime> findOldestPendingDigest();
+
+    /**
+     * Захватывает записи, которые еще ждут отправки, и помечает их токеном захвата
+     * @return сколько записей захвачено; остальные уже забрал другой экземпляр
+     */
+    @Transactional
+    @Modifying
+    @Query("UPDATE OutboxMessage m SET m.status = ru.unithack.bot.domain.enums.OutboxStatus.SENDING, " +
+           "m.claimToken = :claimToken, m.claimedAt = :claimedAt " +
+           "WHERE m.id IN :ids AND m.status = ru.unithack.bot.domain.enums.OutboxStatus.PENDING")
+    int markSending(Collection<Long> ids, String claimToken, LocalDateTime claimedAt);
+
+    @Query("SELECT m FROM OutboxMessage m WHERE m.claimToken = :claimToken " +
+           "AND m.status = ru.unithack.bot.domain.enums.OutboxStatus.SENDING ORDER BY m.id ASC")
+    List<OutboxMessage> findByClaimToken(String claimToken);
+
+    /**
+     * Завершает отправку. Записи, которые успели вернуться в очередь и достались другому захвату, не меняются
+     */
+    @Transactional
+    @Modifying
+    @Query("UPDATE OutboxMessage m SET m.status = :status, m.sentAt = :sentAt " +
+           "WHERE m.id IN :ids AND m.claimToken = :claimToken")
+    int complete(Collection<Long> ids, String claimToken, OutboxStatus status, LocalDateTime sentAt);
+
+    /**
+     * Продлевает аренду записей, которые еще ждут в очереди отправки этого экземпляра
+     */
+    @Transactional
+    @Modifying
+    @Query("UPDATE OutboxMessage m SET m.claimedAt = :claimedAt WHERE m.claimToken IN :claimTokens " +
+           "AND m.status = ru.unithack.bot.domain.enums.OutboxStatus.SENDING")
+    int renewClaims(Collection<String> claimTokens, LocalDateTime claimedAt);
+
+    /**
+     * Возвращает в очередь сообщения, захваченные раньше claimedBefore и так и не отправленные:
+     * их отправка прервалась остановкой экземпляра. Записи с действующей арендой не трогаются
+     */
+    @Transactional
+    @Modifying
+    @Query("UPDATE OutboxMessage m SET m.status = ru.unithack.bot.domain.enums.OutboxStatus.PENDING " +
+           "WHERE m.status = ru.unithack.bot.domain.enums.OutboxStatus.SENDING " +
+           "AND (m.claimedAt IS NULL OR m.claimedAt < :claimedBefore)")
+    int releaseExpired(LocalDateTime claimedBefore);
+
+    @Transactional
+    @Modifying
+    @Query("DELETE FROM OutboxMessage m WHERE m.status IN (ru.unithack.bot.domain.enums.OutboxStatus.SENT, " +
+           "ru.unithack.bot.domain.enums.OutboxStatus.FAILED) AND m.sentAt < :before")
+    int deleteCompletedBefore(LocalDateTime before);
+}
@@ -1,12 +1,17 @@
 package ru.unithack.bot.infrastructure.repository;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 import ru.unithack.bot.domain.model.Role;
 
+import java.util.List;
 import java.util.Optional;
 
 @Repository
 public interface RoleRepository extends JpaRepository<Role, Long> {
     Optional<Role> findByName(String name);
+
+    @Query("SELECT r.name FROM RoleUser ru JOIN ru.role r WHERE ru.user.id = :userId")
+    List<String> findRoleNamesByUserId(Long userId);
 } 
\ No newline at end of file
@@ -0,0 +1,19 @@
+package ru.unithack.bot.infrastructure.repository;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+import ru.unithack.bot.domain.model.UpdateCheckpoint;
+
+@Repository
+public interface UpdateCheckpointRepository extends JpaRepository<UpdateCheckpoint, String> {
+
+    /**
+     * Сдвигает контрольную точку вперед. Точка никогда не откатывается назад,
+     * даже если пакеты обновлений сохраняются параллельно
+     */
+    @Modifying
+    @Query("UPDATE UpdateCheckpoint c SET c.lastUpdateId = :updateId WHERE c.name = :name AND c.lastUpdateId < :updateId")
+    int advance(String name, Integer updateId);
+}
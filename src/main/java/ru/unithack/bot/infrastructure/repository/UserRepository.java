@@ -1,10 +1,17 @@
 package ru.unithack.bot.infrastructure.repository;
 
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 import ru.unithack.bot.domain.model.User;
 import ru.unithack.bot.domain.model.UserInfo;
+import ru.unithack.bot.domain.projection.BroadcastRecipient;
+import ru.unithack.bot.domain.projection.UserDirectoryEntry;
 
+import java.util.List;
 import java.util.Optional;
 
 @Repository
@@ -12,4 +19,50 @@ public interface UserRepository extends JpaRepository<User, Long> {
     Optional<User> findByUserInfo_QrCode(String qrCode);
     Optional<User> findByUserInfo_ChatId(Long chatId);
     Optional<User> findByUserInfo_Name(String name);
+
+    /**
+     * Следующая порция получателей рассылки после указанного user_id (keyset-пагинация)
+     */
+    @Query("SELECT new ru.unithack.bot.domain.projection.BroadcastRecipient(ui.id, ui.chatId) FROM UserInfo ui " +
+           "WHERE ui.chatId IS NOT NULL AND ui.reachable = true AND ui.id > :afterUserId ORDER BY ui.id ASC")
+    List<BroadcastRecipient> findBroadcastRecipients(Long afterUserId, Pageable pageable);
+
+    /**
+     * Порция справочника пользователей после указанного user_id. Роли собираются
+     * в строку тем же запросом, без отдельной загрузки для каждого пользователя
+     */
+    @Query("SELECT new ru.unithack.bot.domain.projection.UserDirectoryEntry(ui.id, ui.name, ui.username, ui.chatId, " +
+           "listagg(r.name, ', ') WITHIN GROUP (ORDER BY r.name)) " +
+           "FROM UserInfo ui LEFT JOIN ui.user u LEFT JOIN u.roleUser ru LEFT JOIN ru.role r " +
+           "WHERE ui.id > :afterUserId GROUP BY ui.id, ui.name, ui.username, ui.chatId ORDER BY ui.id ASC")
+    List<UserDirectoryEntry> findDirectoryAfter(Long afterUserId, Pageable pageable);
+
+    /**
+     * Порция справочника пользователей перед указанным user_id, в обратном порядке
+     */
+    @Query("SELECT new ru.unithack.bot.domain.projection.UserDirectoryEntry(ui.id, ui.name, ui.username, ui.chatId, " +
+           "listagg(r.name, ', ') WITHIN GROUP (ORDER BY r.name)) " +
+           "FROM UserInfo ui LEFT JOIN ui.user u LEFT JOIN u.roleUser ru LEFT JOIN ru.role r " +
+           "WHERE ui.id < :beforeUserId GROUP BY ui.id, ui.name, ui.username, ui.chatId ORDER BY ui.id DESC")
+    List<UserDirectoryEntry> findDirectoryBefore(Long beforeUserId, Pageable pageable);
+
+    @Query("SELECT ui FROM UserInfo ui WHERE ui.chatId = :chatId")
+    Optional<UserInfo> findUserInfoByChatId(Long chatId);
+
+    @Transactional
+    @Modifying
+    @Query("UPDATE UserInfo ui SET ui.name = :name, ui.username = :username WHERE ui.chatId = :chatId")
+    int updateProfile(Long chatId, String name, String username);
+
+    @Query("SELECT COUNT(ui) FROM UserInfo ui WHERE ui.chatId IS NOT NULL AND ui.reachable = true")
+    int countBroadcastRecipients();
+
+    /**
+     * Меняет доступность чата
+     * @return 0, если доступность уже была такой
+     */
+    @Transactional
+    @Modifying
+    @Query("UPDATE UserInfo ui SET ui.reachable = :reachable WHERE ui.chatId = :chatId AND ui.reachable <> :reachable")
+    int updateReachable(Long chatId, boolean reachable);
 } 
\ No newline at end of file
@@ -1,13 +1,14 @@
 package ru.unithack.bot.infrastructure.repository;
 
 import org.springframework.data.jpa.repository.JpaRepository;
-import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 import ru.unithack.bot.domain.model.User;
 import ru.unithack.bot.domain.model.Workshop;
 import ru.unithack.bot.domain.model.WorkshopRegistration;
+import ru.unithack.bot.domain.projection.ConfirmationDeadline;
+import ru.unithack.bot.domain.projection.UserWorkshopEntry;
 
 import java.time.LocalDateTime;
 import java.util.List;
@@ -20,9 +21,20 @@ public interface WorkshopRegistrationRepository extends JpaRepository<WorkshopRe
     
     List<WorkshopRegistration> findByUserOrderByRegistrationTimeDesc(User user);
     
+    /**
+     * Записи пользователя вместе со счетчиками мастер-классов и позицией в листе ожидания, одним запросом
+     */
+    @Query("SELECT new ru.unithack.bot.domain.projection.UserWorkshopEntry(w.id, w.title, w.startTime, w.capacity, " +
+           "w.registeredCount, w.waitlistCount, r.waitlist, " +
+           "CASE WHEN r.waitlist = true AND r.waitlistSequence IS NOT NULL THEN " +
+           "(SELECT COUNT(a) FROM WorkshopRegistration a WHERE a.workshop = w AND a.waitlist = true " +
+           "AND a.waitlistSequence < r.waitlistSequence) + 1 END) " +
+           "FROM WorkshopRegistration r JOIN r.workshop w WHERE r.user.id = :userId ORDER BY r.registrationTime DESC")
+    List<UserWorkshopEntry> findUserWorkshopEntries(Long userId);
+    
     Optional<WorkshopRegistration> findByWorkshopAndUser(Workshop workshop, User user);
     
-    List<WorkshopRegistration> findByWorkshopAndWaitlistTrueOrderByRegistrationTimeAsc(Workshop workshop);
+    List<WorkshopRegistration> findByWorkshopAndWaitlistTrueOrderByWaitlistSequenceAsc(Workshop workshop);
     
     List<WorkshopRegistration> findByWorkshopAndWaitlistFalseOrderByRegistrationTimeAsc(Workshop workshop);
     
@@ -32,24 +44,36 @@ public interface WorkshopRegistrationRepository extends JpaRepository<WorkshopRe
     @Query("SELECT COUNT(r) FROM WorkshopRegistration r WHERE r.workshop = :workshop AND r.waitlist = true")
     int countWaitlistParticipants(Workshop workshop);
     
-    @Query("SELECT r FROM WorkshopRegistration r WHERE r.workshop = :workshop AND r.pendingConfirmation = true AND r.confirmationDeadline < :now")
+    @Query("SELECT r FROM WorkshopRegistration r WHERE r.workshop = :workshop AND r.pendingConfirmation = true AND r.confirmationDeadline <= :now")
     List<WorkshopRegistration> findExpiredConfirmations(Workshop workshop, LocalDateTime now);
     
-    @Query("SELECT r FROM WorkshopRegistration r WHERE r.workshop = :workshop AND r.waitlist = true AND r.pendingConfirmation = false ORDER BY r.waitlistPosition ASC")
-    List<WorkshopRegistration> findNextInWaitlist(Workshop workshop);
+    /**
+     * Все незавершенные сроки подтверждения, по одному на мастер-класс и срок
+     */
+    @Query("SELECT DISTINCT new ru.unithack.bot.domain.projection.ConfirmationDeadline(r.workshop.id, r.confirmationDeadline) " +
+           "FROM WorkshopRegistration r WHERE r.pendingConfirmation = true AND r.confirmationDeadline IS NOT NULL")
+    List<ConfirmationDeadline> findPendingConfirmationDeadlines();
     
-    @Modifying
-    @Query("UPDATE WorkshopRegistration r SET r.waitlistPosition = r.waitlistPosition - 1 WHERE r.workshop = :workshop AND r.waitlist = true AND r.waitlistPosition > :position")
-    void decrementWaitlistPositionsAfter(Workshop workshop, int position);
+    @Query("SELECT r FROM WorkshopRegistration r WHERE r.workshop = :workshop AND r.waitlist = true AND r.pendingConfirmation = false ORDER BY r.waitlistSequence ASC")
+    List<WorkshopRegistration> findNextInWaitlist(Workshop workshop);
     
-    @Query("SELECT MAX(r.waitlistPosition) FROM WorkshopRegistration r WHERE r.workshop = :workshop AND r.waitlist = true")
-    Optional<Integer> findMaxWaitlistPosition(Workshop workshop);
+    @Query("SELECT MAX(r.waitlistSequence) FROM WorkshopRegistration r WHERE r.workshop = :workshop")
+    Optional<Integer> findMaxWaitlistSequence(Workshop workshop);
     
-    @Query("SELECT DISTINCT ui.chatId FROM UserInfo ui WHERE ui.user.id IN " +
+    @Query("SELECT DISTINCT ui.chatId FROM UserInfo ui WHERE ui.reachable = true AND ui.user.id IN " +
            "(SELECT u.id FROM User u)")
     List<Long> findAllUserChatIds();
     
-    @Query("SELECT r FROM WorkshopRegistration r WHERE r.workshop.id = :workshopId " +
-           "AND r.waitlist = false AND r.pendingConfirmation = false")
+    @Query("SELECT r FROM WorkshopRegistration r JOIN FETCH r.user u JOIN FETCH u.userInfo ui " +
+           "WHERE r.workshop.id = :workshopId AND r.waitlist = false AND r.pendingConfirmation = false " +
+           "AND ui.reachable = true")
     List<WorkshopRegistration> findConfirmedByWorkshopId(@Param("workshopId") Long workshopId);
+    
+    /**
+     * Участники мастер-класса, которым можно отправить напоминание
+     */
+    @Query("SELECT r FROM WorkshopRegistration r JOIN FETCH r.user u JOIN FETCH u.userInfo ui " +
+           "WHERE r.workshop = :workshop AND r.waitlist = false AND ui.chatId IS NOT NULL AND ui.reachable = true " +
+           "ORDER BY r.registrationTime ASC")
+    List<WorkshopRegistration> findReminderRecipients(Workshop workshop);
 } 
\ No newline at end of file
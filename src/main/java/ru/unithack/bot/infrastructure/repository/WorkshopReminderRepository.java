@@ -0,0 +1,38 @@
+package ru.unithack.bot.infrastructure.repository;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+import ru.unithack.bot.domain.enums.ReminderKind;
+import ru.unithack.bot.domain.enums.ReminderStatus;
+import ru.unithack.bot.domain.model.WorkshopReminder;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface WorkshopReminderRepository extends JpaRepository<WorkshopReminder, Long> {
+
+    Optional<WorkshopReminder> findByWorkshopIdAndKind(Long workshopId, ReminderKind kind);
+
+    List<WorkshopReminder> findByStatus(ReminderStatus status);
+
+    /**
+     * Забирает напоминание на отправку. Срабатывает только для ожидающего напоминания
+     * с тем же сроком: повторный запуск и устаревший таймер ничего не изменят
+     */
+    @Transactional
+    @Modifying
+    @Query("UPDATE WorkshopReminder r SET r.status = ru.unithack.bot.domain.enums.ReminderStatus.SENT, r.sentAt = :sentAt " +
+           "WHERE r.id = :id AND r.dueAt = :dueAt AND r.status = ru.unithack.bot.domain.enums.ReminderStatus.PENDING")
+    int claim(Long id, LocalDateTime dueAt, LocalDateTime sentAt);
+
+    @Transactional
+    @Modifying
+    @Query("DELETE FROM WorkshopReminder r WHERE r.workshopId = :workshopId")
+    int deleteByWorkshopId(Long workshopId);
+
+}
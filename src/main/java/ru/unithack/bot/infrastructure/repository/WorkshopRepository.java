@@ -1,9 +1,13 @@
 package ru.unithack.bot.infrastructure.repository;
 
+import jakarta.persistence.LockModeType;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 import ru.unithack.bot.domain.model.Workshop;
+import ru.unithack.bot.domain.projection.WorkshopCatalogEntry;
 
 import java.time.LocalDateTime;
 import java.util.List;
@@ -25,12 +29,66 @@ public interface WorkshopRepository extends JpaRepository<Workshop, Long> {
     @Query("SELECT w FROM Workshop w LEFT JOIN FETCH w.registrations WHERE w.active = true ORDER BY w.startTime ASC")
     List<Workshop> findByActiveTrueWithRegistrations();
     
+    /**
+     * Каталог активных мастер-классов с записью указанного пользователя. Запись пользователя
+     * на мастер-класс уникальна, поэтому на каждый мастер-класс приходится одна строка
+     */
+    @Query("SELECT new ru.unithack.bot.domain.projection.WorkshopCatalogEntry(w.id, w.title, w.startTime, w.capacity, " +
+           "w.registeredCount, r.waitlist) " +
+           "FROM Workshop w LEFT JOIN WorkshopRegistration r ON r.workshop = w AND r.user.id = :userId " +
+           "WHERE w.active = true ORDER BY w.startTime ASC")
+    List<WorkshopCatalogEntry> findCatalog(Long userId);
+
     @Query("SELECT w FROM Workshop w LEFT JOIN FETCH w.registrations WHERE w.id = :id")
     Optional<Workshop> findByIdWithRegistrations(Long id);
+
+    /**
+     * Загружает мастер-класс с блокировкой строки до конца транзакции
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT w FROM Workshop w WHERE w.id = :id")
+    Optional<Workshop> findByIdForUpdate(Long id);
+
+    /**
+     * Изменяет счетчики участников и листа ожидания. Вызывается в транзакции,
+     * которая держит блокировку строки мастер-класса
+     */
+    @Modifying
+    @Query("UPDATE Workshop w SET w.registeredCount = w.registeredCount + :registeredDelta, " +
+           "w.waitlistCount = w.waitlistCount + :waitlistDelta WHERE w.id = :id")
+    void adjustCounters(Long id, int registeredDelta, int waitlistDelta);
+
+    @Modifying
+    @Query("UPDATE Workshop w SET w.registeredCount = :registeredCount, w.waitlistCount = :waitlistCount WHERE w.id = :id")
+    void setCounters(Long id, int registeredCount, int waitlistCount);
+
+    /**
+     * Занимает следующий порядковый номер листа ожидания. Вызывается под блокировкой строки мастер-класса
+     */
+    @Modifying
+    @Query("UPDATE Workshop w SET w.nextWaitlistSequence = w.nextWaitlistSequence + 1 WHERE w.id = :id")
+    void advanceWaitlistSequence(Long id);
+
+    @Modifying
+    @Query("UPDATE Workshop w SET w.nextWaitlistSequence = :nextWaitlistSequence WHERE w.id = :id")
+    void setNextWaitlistSequence(Long id, int nextWaitlistSequence);
+
+    @Query("SELECT w.id FROM Workshop w WHERE w.active = true")
+    List<Long> findActiveIds();
+
+    @Query("SELECT w.id FROM Workshop w")
+    List<Long> findAllIds();
     
     /**
      * Находит активные мастер-классы, которые начнутся в течение указанного диапазона времени
      */
     @Query("SELECT w FROM Workshop w WHERE w.active = true AND w.startTime > :start AND w.startTime < :end ORDER BY w.startTime ASC")
     List<Workshop> findByActiveTrueAndStartTimeBetween(LocalDateTime start, LocalDateTime end);
+
+    /**
+     * Находит предстоящие мастер-классы, для которых еще нет записей в журнале напоминаний
+     */
+    @Query("SELECT w FROM Workshop w WHERE w.active = true AND w.startTime > :now " +
+           "AND NOT EXISTS (SELECT r.id FROM WorkshopReminder r WHERE r.workshopId = w.id)")
+    List<Workshop> findUpcomingWithoutReminders(LocalDateTime now);
 } 
\ No newline at end of file
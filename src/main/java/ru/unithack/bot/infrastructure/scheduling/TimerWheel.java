@@ -0,0 +1,234 @@
+package ru.unithack.bot.infrastructure.scheduling;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.LongSupplier;
+
+/**
+ * Иерархическое колесо таймеров для отложенных задач с точностью до одного тика.
+ * <p>
+ * Каждый уровень состоит из 64 ячеек, ячейка уровня N покрывает 64^N тиков: при секундном
+ * тике четыре уровня охватывают около полугода. Задача кладется на уровень, в диапазон которого
+ * попадает ее срок, и спускается на уровень ниже, когда колесо доходит до ее ячейки. Добавление
+ * и отмена выполняются за O(1) и не требуют сканирования всех задач. Задачи адресуются ключом:
+ * повторное планирование с тем же ключом заменяет прежнюю задачу.
+ * <p>
+ * Колеса обслуживает один поток, сами задачи выполняются в отдельном пуле и не задерживают тики.
+ */
+@Component
+public class TimerWheel {
+
+    private static final Logger logger = LoggerFactory.getLogger(TimerWheel.class);
+    private static final int WHEEL_BITS = 6;
+    private static final int WHEEL_SIZE = 1 << WHEEL_BITS;
+    private static final int LEVELS = 4;
+
+    private final long tickMillis;
+    private final LongSupplier clock;
+    private final ScheduledExecutorService ticker = Executors.newSingleThreadScheduledExecutor(
+            runnable -> new Thread(runnable, "timer-wheel"));
+    private final ExecutorService workers;
+    private final Map<String, Timeout> timeouts = new ConcurrentHashMap<>();
+    private final Queue<Timeout> added = new ConcurrentLinkedQueue<>();
+    // Ячейки всех уровней подряд: ячейка slot уровня level лежит по индексу level * WHEEL_SIZE + slot
+    private final List<ArrayDeque<Timeout>> buckets = new ArrayList<>(LEVELS * WHEEL_SIZE);
+    // Задачи со сроком дальше, чем покрывает верхний уровень
+    private final List<Timeout> overflow = new ArrayList<>();
+    private long currentTick;
+
+    @Autowired
+    public TimerWheel(@Value("${app.timer.tick-ms:1000}") long tickMillis,
+                      @Value("${app.timer.worker-threads:2}") int workerThreads,
+                      MeterRegistry meterRegistry) {
+        this(tickMillis, newWorkers(workerThreads), System::currentTimeMillis, meterRegistry);
+        ticker.scheduleAtFixedRate(this::tick, tickMillis, tickMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Колесо без собственного тикера: время берется из clock, тики вызываются через {@link #tick()}
+     */
+    TimerWheel(long tickMillis, ExecutorService workers, LongSupplier clock, MeterRegistry meterRegistry) {
+        this.tickMillis = tickMillis;
+        this.workers = workers;
+        this.clock = clock;
+        for (int i = 0; i < LEVELS * WHEEL_SIZE; i++) {
+            buckets.add(new ArrayDeque<>());
+        }
+        this.currentTick = clock.getAsLong() / tickMillis;
+
+        Gauge.builder("bot.timer.scheduled", timeouts, Map::size)
+                .description("Tasks waiting in the timer wheel")
+                .register(meterRegistry);
+    }
+
+    private static ExecutorService newWorkers(int workerThreads) {
+        AtomicInteger workerNumber = new AtomicInteger();
+        return Executors.newFixedThreadPool(workerThreads,
+                runnable -> new Thread(runnable, "timer-worker-" + workerNumber.incrementAndGet()));
+    }
+
+    /**
+     * Планирует задачу на указанное время. Прежняя задача с тем же ключом отменяется.
+     * Если время уже прошло, задача выполняется на ближайшем тике
+     */
+    public void schedule(String key, LocalDateTime fireAt, Runnable task) {
+        long deadline = fireAt.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        Timeout timeout = new Timeout(key, ceilDiv(deadline, tickMillis), task);
+        Timeout previous = timeouts.put(key, timeout);
+        if (previous != null) {
+            previous.cancelled = true;
+        }
+        added.add(timeout);
+    }
+
+    /**
+     * Отменяет задачу с указанным ключом, если она еще не выполнена
+     */
+    public void cancel(String key) {
+        Timeout timeout = timeouts.remove(key);
+        if (timeout != null) {
+            timeout.cancelled = true;
+        }
+    }
+
+    public boolean isScheduled(String key) {
+        return timeouts.containsKey(key);
+    }
+
+    /**
+     * Продвигает колесо до текущего времени. После паузы потока догоняет пропущенные тики
+     */
+    void tick() {
+        try {
+            long targetTick = clock.getAsLong() / tickMillis;
+            while (currentTick < targetTick) {
+                currentTick++;
+                drainAdded();
+                cascade();
+                expire(bucket(0, currentTick));
+            }
+            drainAdded();
+        } catch (Exception e) {
+            logger.error("Timer wheel tick failed", e);
+        }
+    }
+
+    private void drainAdded() {
+        Timeout timeout;
+        while ((timeout = added.poll()) != null) {
+            if (!timeout.cancelled) {
+                place(timeout);
+            }
+        }
+    }
+
+    /**
+     * Переносит задачи из ячеек верхних уровней, до которых дошло колесо, на нижние уровни
+     */
+    private void cascade() {
+        if (currentTick % span(LEVELS - 1) == 0 && !overflow.isEmpty()) {
+            List<Timeout> pending = new ArrayList<>(overflow);
+            overflow.clear();
+            pending.forEach(this::place);
+        }
+        for (int level = LEVELS - 1; level > 0; level--) {
+            long span = span(level);
+            if (currentTick % span == 0) {
+                ArrayDeque<Timeout> bucket = bucket(level, currentTick / span);
+                List<Timeout> moved = new ArrayList<>(bucket);
+                bucket.clear();
+                moved.forEach(this::place);
+            }
+        }
+    }
+
+    private void place(Timeout timeout) {
+        if (timeout.cancelled) {
+            return;
+        }
+        long delay = timeout.deadlineTick - currentTick;
+        if (delay <= 0) {
+            fire(timeout);
+            return;
+        }
+        for (int level = 0; level < LEVELS; level++) {
+            if (delay < span(level + 1)) {
+                bucket(level, timeout.deadlineTick / span(level)).add(timeout);
+                return;
+            }
+        }
+        overflow.add(timeout);
+    }
+
+    private void expire(ArrayDeque<Timeout> bucket) {
+        Timeout timeout;
+        while ((timeout = bucket.poll()) != null) {
+            fire(timeout);
+        }
+    }
+
+    private void fire(Timeout timeout) {
+        if (timeout.cancelled || !timeouts.remove(timeout.key, timeout)) {
+            return;
+        }
+        workers.execute(() -> {
+            try {
+                timeout.task.run();
+            } catch (Exception e) {
+                logger.error("Timer task {} failed", timeout.key, e);
+            }
+        });
+    }
+
+    private ArrayDeque<Timeout> bucket(int level, long slot) {
+        return buckets.get(level * WHEEL_SIZE + (int) (slot % WHEEL_SIZE));
+    }
+
+    private static long span(int level) {
+        return 1L << (WHEEL_BITS * level);
+    }
+
+    private static long ceilDiv(long value, long divisor) {
+        return -Math.floorDiv(-value, divisor);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        ticker.shutdownNow();
+        workers.shutdown();
+    }
+
+    private static final class Timeout {
+        private final String key;
+        private final long deadlineTick;
+        private final Runnable task;
+        private volatile boolean cancelled;
+
+        private Timeout(String key, long deadlineTick, Runnable task) {
+            this.key = key;
+            this.deadlineTick = deadlineTick;
+            this.task = task;
+        }
+    }
+}
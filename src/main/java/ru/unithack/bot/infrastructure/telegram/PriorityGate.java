@@ -0,0 +1,80 @@
+package ru.unithack.bot.infrastructure.telegram;
+
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Семафор, который отдает освободившееся разрешение ожидающему с наивысшим приоритетом.
+ * Внутри одного класса порядок выдачи не гарантируется.
+ */
+class PriorityGate {
+
+    private static final UpdatePriority[] PRIORITIES = UpdatePriority.values();
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition[] conditions = new Condition[PRIORITIES.length];
+    private final int[] waiting = new int[PRIORITIES.length];
+    private int available;
+
+    PriorityGate(int permits) {
+        this.available = permits;
+        for (int i = 0; i < conditions.length; i++) {
+            conditions[i] = lock.newCondition();
+        }
+    }
+
+    void acquire(UpdatePriority priority) throws InterruptedException {
+        int index = priority.ordinal();
+        lock.lock();
+        try {
+            waiting[index]++;
+            try {
+                while (available == 0 || hasHigherWaiting(index)) {
+                    conditions[index].await();
+                }
+            } catch (InterruptedException e) {
+                // Сигнал мог достаться прерванному потоку - передаем его дальше
+                waiting[index]--;
+                signalNext();
+                throw e;
+            }
+            waiting[index]--;
+            available--;
+            // Свободные разрешения могли остаться - будим следующего по приоритету
+            signalNext();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    void release() {
+        lock.lock();
+        try {
+            available++;
+            signalNext();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private boolean hasHigherWaiting(int index) {
+        for (int i = 0; i < index; i++) {
+            if (waiting[i] > 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void signalNext() {
+        if (available == 0) {
+            return;
+        }
+        for (int i = 0; i < waiting.length; i++) {
+            if (waiting[i] > 0) {
+                conditions[i].signal();
+                return;
+            }
+        }
+    }
+}
@@ -0,0 +1,377 @@
+package ru.unithack.bot.infrastructure.telegram;
+
+import com.pengrad.telegrambot.Callback;
+import com.pengrad.telegrambot.TelegramBot;
+import com.pengrad.telegrambot.request.BaseRequest;
+import com.pengrad.telegrambot.response.BaseResponse;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Асинхронная отправка запросов к Telegram API.
+ * Запрос ставится в очередь чата и отправляется через асинхронный execute библиотеки,
+ * вызывающий поток не ждет ответа. Запросы одного чата уходят по одному:
+ * следующий отправляется только после ответа на предыдущий. Ответы на команды
+ * идут в порядке поступления и обгоняют ожидающие сообщения рассылок этого чата.
+ * <p>
+ * Все запросы ограничены общим ведром токенов (лимит Telegram около 30 сообщений в секунду),
+ * сообщения чатов - еще и ведром каждого чата (около одного сообщения в секунду).
+ * Массовые рассылки дополнительно ограничены собственным бюджетом, чтобы оставлять место
+ * ответам на команды. На ответ 429 вся отправка приостанавливается на retry_after секунд,
+ * после чего запрос отправляется повторно.
+ */
+@Component
+public class TelegramSender {
+
+    private static final Logger logger = LoggerFactory.getLogger(TelegramSender.class);
+    private static final int TOO_MANY_REQUESTS = 429;
+    private static final int FORBIDDEN = 403;
+    private static final int BAD_REQUEST = 400;
+
+    /**
+     * Telegram ответил, что писать в чат больше нельзя: пользователь заблокировал бота
+     * или удалил аккаунт
+     */
+    public record ChatUnreachable(long chatId, String description) {
+    }
+
+    private final TelegramBot telegramBot;
+    private final ApplicationEventPublisher eventPublisher;
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(
+            runnable -> new Thread(runnable, "telegram-sender"));
+    private final Map<Long, ChatLane> lanes = new ConcurrentHashMap<>();
+    private final AtomicInteger pending = new AtomicInteger();
+    private final AtomicLong globalPausedUntil = new AtomicLong(System.nanoTime());
+    private final TokenBucket globalBucket;
+    private final TokenBucket bulkBucket;
+    private final int chatCapacity;
+    private final double chatMessagesPerSecond;
+    private final int maxAttempts;
+    private final Timer latency;
+    private final Counter failures;
+    private final Counter retries;
+    private final Counter sentInteractive;
+    private final Counter sentBulk;
+
+    @Autowired
+    public TelegramSender(TelegramBot telegramBot,
+                         ApplicationEventPublisher eventPublisher,
+                         @Value("${app.sender.global-per-second:30}") double globalPerSecond,
+                         @Value("${app.sender.bulk-per-second:20}") double bulkPerSecond,
+                         @Value("${app.sender.chat-capacity:3}") int chatCapacity,
+                         @Value("${app.sender.chat-per-second:1}") double chatMessagesPerSecond,
+                         @Value("${app.sender.max-attempts:5}") int maxAttempts,
+                         MeterRegistry meterRegistry) {
+        this.telegramBot = telegramBot;
+        this.eventPublisher = eventPublisher;
+        this.globalBucket = new TokenBucket((int) Math.ceil(globalPerSecond), globalPerSecond);
+        this.bulkBucket = new TokenBucket(1, bulkPerSecond);
+        this.chatCapacity = chatCapacity;
+        this.chatMessagesPerSecond = chatMessagesPerSecond;
+        this.maxAttempts = maxAttempts;
+
+        this.latency = Timer.builder("bot.sender.latency")
+                .description("Telegram API round-trip time for outgoing requests")
+                .publishPercentiles(0.5, 0.95, 0.99)
+                .register(meterRegistry);
+        this.failures = Counter.builder("bot.sender.failures")
+                .description("Outgoing requests that failed or were rejected by Telegram")
+                .register(meterRegistry);
+        this.retries = Counter.builder("bot.sender.retries")
+                .description("Outgoing requests rescheduled after 429 or a network error")
+                .register(meterRegistry);
+        this.sentInteractive = Counter.builder("bot.sender.sent")
+                .description("Outgoing requests accepted by Telegram")
+                .tag("kind", "interactive")
+                .register(meterRegistry);
+        this.sentBulk = Counter.builder("bot.sender.sent")
+                .description("Outgoing requests accepted by Telegram")
+                .tag("kind", "bulk")
+                .register(meterRegistry);
+        Gauge.builder("bot.sender.pending", pending, AtomicInteger::get)
+                .description("Outgoing requests queued or waiting for a response")
+                .register(meterRegistry);
+        Gauge.builder("bot.sender.chats", lanes, Map::size)
+                .description("Chats with an outgoing queue")
+                .register(meterRegistry);
+
+        scheduler.scheduleAtFixedRate(this::evictIdleLanes, 1, 1, TimeUnit.MINUTES);
+    }
+
+    /**
+     * Отправляет ответ в чат с сохранением порядка относительно других ответов этого чата
+     * @return future, который завершается ответом Telegram или ошибкой ввода-вывода
+     */
+    public <T extends BaseRequest<T, R>, R extends BaseResponse> CompletableFuture<R> send(long chatId, T request) {
+        return enqueue(chatId, new Outgoing<>(request, false));
+    }
+
+    /**
+     * Отправляет сообщение массовой рассылки: оно расходует отдельный, меньший бюджет
+     * и не вытесняет ответы на команды
+     */
+    public <T extends BaseRequest<T, R>, R extends BaseResponse> CompletableFuture<R> sendBulk(long chatId, T request) {
+        return enqueue(chatId, new Outgoing<>(request, true));
+    }
+
+    /**
+     * Отправляет запрос, не привязанный к порядку сообщений чата (например, ответ на колбэк).
+     * Запрос расходует общий бюджет наравне с сообщениями чатов
+     */
+    public <T extends BaseRequest<T, R>, R extends BaseResponse> CompletableFuture<R> execute(T request) {
+        Outgoing<T, R> outgoing = new Outgoing<>(request, false);
+        pending.incrementAndGet();
+        startUnordered(outgoing);
+        return outgoing.future;
+    }
+
+    private void startUnordered(Outgoing<?, ?> outgoing) {
+        long delay = globalPausedUntil.get() - System.nanoTime();
+        if (delay <= 0) {
+            delay = globalBucket.tryAcquireOrDelay();
+        }
+        if (delay > 0) {
+            scheduler.schedule(() -> startUnordered(outgoing), delay, TimeUnit.NANOSECONDS);
+            return;
+        }
+        outgoing.start(null);
+    }
+
+    private <T extends BaseRequest<T, R>, R extends BaseResponse> CompletableFuture<R> enqueue(long chatId,
+                                                                                               Outgoing<T, R> outgoing) {
+        pending.incrementAndGet();
+        while (true) {
+            ChatLane lane = lanes.computeIfAbsent(chatId, ChatLane::new);
+            boolean start;
+            synchronized (lane) {
+                if (lane.retired) {
+                    continue;
+                }
+                (outgoing.bulk ? lane.bulk : lane.interactive).add(outgoing);
+                start = !lane.busy;
+                lane.busy = true;
+            }
+            if (start) {
+                pump(lane);
+            }
+            return outgoing.future;
+        }
+    }
+
+    /**
+     * Отправляет следующий запрос чата, когда это разрешают лимиты, иначе откладывает попытку.
+     * Повторяемый запрос остается текущим, иначе ответ на команду выбирается раньше рассылки.
+     * Вызывается только владельцем очереди (lane.busy), поэтому ведро чата не требует синхронизации
+     */
+    private void pump(ChatLane lane) {
+        Outgoing<?, ?> head;
+        long delay;
+        synchronized (lane) {
+            head = lane.current != null ? lane.current : lane.interactive.peek();
+            if (head == null) {
+                head = lane.bulk.peek();
+            }
+            if (head == null) {
+                lane.busy = false;
+                return;
+            }
+            long now = System.nanoTime();
+            delay = Math.max(Math.max(lane.pausedUntil, globalPausedUntil.get()) - now,
+                    lane.bucket.nanosUntilAvailable());
+        }
+
+        // Общее ведро проверяется первым; если не хватило бюджета рассылок, токен возвращается
+        if (delay <= 0) {
+            delay = globalBucket.tryAcquireOrDelay();
+        }
+        if (delay <= 0 && head.bulk) {
+            delay = bulkBucket.tryAcquireOrDelay();
+            if (delay > 0) {
+                globalBucket.refund();
+            }
+        }
+        if (delay > 0) {
+            scheduler.schedule(() -> pump(lane), delay, TimeUnit.NANOSECONDS);
+            return;
+        }
+
+        synchronized (lane) {
+            if (lane.current == null) {
+                (head.bulk ? lane.bulk : lane.interactive).poll();
+                lane.current = head;
+            }
+        }
+        lane.bucket.tryAcquire();
+        head.start(lane);
+    }
+
+    /**
+     * Запрос завершен: переходим к следующему
+     */
+    private void next(ChatLane lane) {
+        if (lane == null) {
+            return;
+        }
+        synchronized (lane) {
+            lane.current = null;
+        }
+        pump(lane);
+    }
+
+    /**
+     * Приостанавливает всю отправку: ответ 429 относится к боту целиком, а не к одному чату
+     */
+    private void pauseAll(long delayMillis) {
+        long until = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(delayMillis);
+        globalPausedUntil.accumulateAndGet(until, Math::max);
+    }
+
+    /**
+     * Оставляет запрос в голове очереди и повторяет его после паузы
+     */
+    private void retry(ChatLane lane, Outgoing<?, ?> outgoing, long delayMillis) {
+        retries.increment();
+        if (lane == null) {
+            scheduler.schedule(() -> startUnordered(outgoing), delayMillis, TimeUnit.MILLISECONDS);
+            return;
+        }
+        synchronized (lane) {
+            lane.pausedUntil = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(delayMillis);
+        }
+        pump(lane);
+    }
+
+    private void evictIdleLanes() {
+        for (ChatLane lane : lanes.values()) {
+            synchronized (lane) {
+                if (!lane.busy && lane.interactive.isEmpty() && lane.bulk.isEmpty() && lane.bucket.isIdle()) {
+                    lane.retired = true;
+                    lanes.remove(lane.chatId, lane);
+                }
+            }
+        }
+    }
+
+    private static boolean isUnreachable(BaseResponse response) {
+        return response.errorCode() == FORBIDDEN
+                || response.errorCode() == BAD_REQUEST && response.description() != null
+                && response.description().contains("chat not found");
+    }
+
+    public int getPending() {
+        return pending.get();
+    }
+
+    /**
+     * Дает отправиться уже поставленным в очередь сообщениям
+     */
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (pending.get() > 0 && System.nanoTime() < deadline) {
+            Thread.sleep(50);
+        }
+        if (pending.get() > 0) {
+            logger.warn("TelegramSender stopped with {} requests not sent", pending.get());
+        }
+        scheduler.shutdownNow();
+    }
+
+    private final class Outgoing<T extends BaseRequest<T, R>, R extends BaseResponse> {
+        private final T request;
+        private final boolean bulk;
+        private final CompletableFuture<R> future = new CompletableFuture<>();
+        private int attempts;
+
+        private Outgoing(T request, boolean bulk) {
+            this.request = request;
+            this.bulk = bulk;
+        }
+
+        private void start(ChatLane lane) {
+            attempts++;
+            long start = System.nanoTime();
+            telegramBot.execute(request, new Callback<T, R>() {
+                @Override
+                public void onResponse(T request, R response) {
+                    latency.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                    if (response.errorCode() == TOO_MANY_REQUESTS && attempts < maxAttempts) {
+                        int retryAfter = response.parameters() != null && response.parameters().retryAfter() != null
+                                ? response.parameters().retryAfter() : 1;
+                        logger.warn("Telegram asked to retry {} after {}s", request.getMethod(), retryAfter);
+                        pauseAll(TimeUnit.SECONDS.toMillis(retryAfter));
+                        retry(lane, Outgoing.this, TimeUnit.SECONDS.toMillis(retryAfter));
+                        return;
+                    }
+
+                    if (response.isOk()) {
+                        (bulk ? sentBulk : sentInteractive).increment();
+                    } else {
+                        failures.increment();
+                        logger.warn("Telegram API rejected {}: {} {}", request.getMethod(),
+                                response.errorCode(), response.description());
+                        if (lane != null && isUnreachable(response)) {
+                            eventPublisher.publishEvent(new ChatUnreachable(lane.chatId, response.description()));
+                        }
+                    }
+                    pending.decrementAndGet();
+                    next(lane);
+                    future.complete(response);
+                }
+
+                @Override
+                public void onFailure(T request, IOException e) {
+                    latency.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                    if (attempts < maxAttempts) {
+                        long backoff = TimeUnit.SECONDS.toMillis(1L << Math.min(attempts - 1, 5));
+                        logger.warn("Failed to send {}, retrying in {} ms: {}", request.getMethod(), backoff, e.getMessage());
+                        retry(lane, Outgoing.this, backoff);
+                        return;
+                    }
+
+                    failures.increment();
+                    logger.error("Giving up on {} after {} attempts: {}", request.getMethod(), attempts, e.getMessage());
+                    pending.decrementAndGet();
+                    next(lane);
+                    future.completeExceptionally(e);
+                }
+            });
+        }
+    }
+
+    private final class ChatLane {
+        private final long chatId;
+        private final Queue<Outgoing<?, ?>> interactive = new ArrayDeque<>();
+        private final Queue<Outgoing<?, ?>> bulk = new ArrayDeque<>();
+        private Outgoing<?, ?> current;
+        private final TokenBucket bucket = new TokenBucket(chatCapacity, chatMessagesPerSecond);
+        private long pausedUntil = System.nanoTime();
+        private boolean busy;
+        private boolean retired;
+
+        private ChatLane(long chatId) {
+            this.chatId = chatId;
+        }
+    }
+}
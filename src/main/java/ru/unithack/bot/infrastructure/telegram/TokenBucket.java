@@ -0,0 +1,69 @@
+package ru.unithack.bot.infrastructure.telegram;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Неблокирующее ведро токенов. Состояние - одно число, теоретическое время прихода
+ * следующего запроса (алгоритм GCRA), поэтому проверка выполняется одним compareAndSet
+ * и не требует фонового пополнения.
+ */
+public final class TokenBucket {
+
+    private final long intervalNanos;
+    private final long toleranceNanos;
+    private final AtomicLong theoreticalArrival;
+
+    /**
+     * @param capacity         сколько запросов можно сделать подряд
+     * @param permitsPerSecond скорость восстановления токенов
+     */
+    public TokenBucket(int capacity, double permitsPerSecond) {
+        this.intervalNanos = (long) (1_000_000_000L / permitsPerSecond);
+        this.toleranceNanos = intervalNanos * (capacity - 1);
+        this.theoreticalArrival = new AtomicLong(System.nanoTime());
+    }
+
+    public boolean tryAcquire() {
+        return tryAcquireOrDelay() == 0;
+    }
+
+    /**
+     * Забирает токен, если он есть
+     * @return 0, если токен получен, иначе через сколько наносекунд он появится
+     */
+    public long tryAcquireOrDelay() {
+        long now = System.nanoTime();
+        while (true) {
+            long arrival = theoreticalArrival.get();
+            long next = Math.max(arrival, now);
+            long delay = next - now - toleranceNanos;
+            if (delay > 0) {
+                return delay;
+            }
+            if (theoreticalArrival.compareAndSet(arrival, next + intervalNanos)) {
+                return 0;
+            }
+        }
+    }
+
+    /**
+     * Возвращает токен, полученный tryAcquire, если запрос так и не был выполнен
+     */
+    public void refund() {
+        theoreticalArrival.addAndGet(-intervalNanos);
+    }
+
+    /**
+     * Через сколько наносекунд появится токен, без его захвата
+     */
+    public long nanosUntilAvailable() {
+        return Math.max(0, theoreticalArrival.get() - toleranceNanos - System.nanoTime());
+    }
+
+    /**
+     * Ведро полностью восстановилось, и его можно удалить без потери состояния
+     */
+    public boolean isIdle() {
+        return theoreticalArrival.get() - System.nanoTime() <= 0;
+    }
+}
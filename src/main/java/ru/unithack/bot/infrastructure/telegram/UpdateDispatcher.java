@@ -0,0 +1,268 @@
+package ru.unithack.bot.infrastructure.telegram;
+
+import com.pengrad.telegrambot.model.Update;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayDeque;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Распределяет входящие обновления по виртуальным потокам.
+ * Обновления одного чата обрабатываются строго в порядке поступления,
+ * обновления разных чатов - параллельно, но не более maxConcurrency одновременно.
+ * <p>
+ * Освободившийся слот обработки получает обновление с наивысшим {@link UpdatePriority}.
+ * Общая очередь ограничена maxQueued, очередь чата - maxQueuedPerChat; при их заполнении
+ * не принимаются только обновления просмотра, они передаются обработчику отказов.
+ * Действия организаторов и изменения данных ставятся в очередь всегда.
+ */
+@Component
+public class UpdateDispatcher {
+
+    private static final Logger logger = LoggerFactory.getLogger(UpdateDispatcher.class);
+
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private final Map<Long, ChatLane> lanes = new ConcurrentHashMap<>();
+    private final AtomicInteger queuedUpdates = new AtomicInteger();
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final PriorityGate gate;
+    private final int maxQueuedPerChat;
+    private final Map<UpdatePriority, Integer> admissionLimits = new EnumMap<>(UpdatePriority.class);
+    private final Map<UpdatePriority, Timer> queueWait = new EnumMap<>(UpdatePriority.class);
+    private final Map<UpdatePriority, Counter> rejected = new EnumMap<>(UpdatePriority.class);
+
+    private volatile BiConsumer<Update, UpdateRoute> handler;
+    private volatile Consumer<Update> rejectionHandler = update -> { };
+    private volatile Function<Update, UpdateRoute> classifier = update -> new UpdateRoute(UpdatePriority.BROWSING, () -> { });
+
+    @Autowired
+    public UpdateDispatcher(@Value("${app.dispatcher.max-concurrency:64}") int maxConcurrency,
+                            @Value("${app.dispatcher.max-queued:1000}") int maxQueued,
+                            @Value("${app.dispatcher.max-queued-per-chat:100}") int maxQueuedPerChat,
+                            MeterRegistry meterRegistry) {
+        this.gate = new PriorityGate(maxConcurrency);
+        this.maxQueuedPerChat = maxQueuedPerChat;
+
+        for (UpdatePriority priority : UpdatePriority.values()) {
+            String tag = priority.name().toLowerCase();
+            admissionLimits.put(priority, (int) Math.ceil(maxQueued * priority.getAdmissionShare()));
+            queueWait.put(priority, Timer.builder("bot.dispatcher.queue_wait")
+                    .description("Time an update waits in the queue before processing starts")
+                    .tag("priority", tag)
+                    .publishPercentiles(0.5, 0.95, 0.99)
+                    .register(meterRegistry));
+            rejected.put(priority, Counter.builder("bot.dispatcher.rejected")
+                    .description("Updates rejected because the queue is saturated")
+                    .tag("priority", tag)
+                    .register(meterRegistry));
+        }
+
+        Gauge.builder("bot.dispatcher.queued", queuedUpdates, AtomicInteger::get)
+                .description("Updates waiting to be processed")
+                .register(meterRegistry);
+        Gauge.builder("bot.dispatcher.in_flight", inFlight, AtomicInteger::get)
+                .description("Updates being processed right now")
+                .register(meterRegistry);
+        Gauge.builder("bot.dispatcher.active_chats", lanes, Map::size)
+                .description("Chats with queued or running updates")
+                .register(meterRegistry);
+
+        logger.info("UpdateDispatcher initialized: maxConcurrency={}, maxQueued={}, maxQueuedPerChat={}",
+                maxConcurrency, maxQueued, maxQueuedPerChat);
+    }
+
+    /**
+     * Устанавливает обработчик, которому передаются обновления вместе с маршрутом.
+     * Обработчик должен выполнить {@link UpdateRoute#action()}
+     */
+    public void registerHandler(BiConsumer<Update, UpdateRoute> handler) {
+        this.handler = handler;
+    }
+
+    /**
+     * Устанавливает обработчик обновлений, не принятых из-за переполнения очереди.
+     * Вызывается в отдельном виртуальном потоке и не занимает слот обработки
+     */
+    public void registerRejectionHandler(Consumer<Update> rejectionHandler) {
+        this.rejectionHandler = rejectionHandler;
+    }
+
+    /**
+     * Устанавливает функцию, определяющую приоритет и действие обработки обновления. Вызывается
+     * в потоке, получившем обновление, поэтому не должна обращаться к базе данных
+     */
+    public void registerClassifier(Function<Update, UpdateRoute> classifier) {
+        this.classifier = classifier;
+    }
+
+    /**
+     * Классифицирует обновление. Маршрут можно использовать до постановки в очередь
+     * и передать в {@link #dispatch(Update, UpdateRoute)}, чтобы не классифицировать повторно
+     */
+    public UpdateRoute classify(Update update) {
+        return classifier.apply(update);
+    }
+
+    public void dispatch(List<Update> updates) {
+        for (Update update : updates) {
+            dispatch(update, classify(update));
+        }
+    }
+
+    /**
+     * Ставит обновление в очередь его чата и запускает обработку очереди, если она простаивает
+     */
+    public void dispatch(Update update, UpdateRoute route) {
+        long chatId = resolveChatId(update);
+        UpdatePriority priority = route.priority();
+
+        if (priority.isSheddable() && queuedUpdates.get() >= admissionLimits.get(priority)) {
+            reject(update, priority, "queue is saturated");
+            return;
+        }
+
+        while (true) {
+            ChatLane lane = lanes.computeIfAbsent(chatId, ChatLane::new);
+            synchronized (lane) {
+                if (lane.retired) {
+                    // Очередь уже удалена из карты обрабатывающим потоком - берем новую
+                    continue;
+                }
+
+                if (priority.isSheddable() && lane.updates.size() >= maxQueuedPerChat) {
+                    break;
+                }
+
+                lane.updates.add(new QueuedUpdate(update, route, System.nanoTime()));
+                queuedUpdates.incrementAndGet();
+
+                if (!lane.scheduled) {
+                    lane.scheduled = true;
+                    executor.execute(() -> drain(lane));
+                }
+                return;
+            }
+        }
+
+        reject(update, priority, "too many updates queued for chat " + chatId);
+    }
+
+    private void reject(Update update, UpdatePriority priority, String reason) {
+        rejected.get(priority).increment();
+        logger.warn("Rejected {} update {}: {}", priority, update.updateId(), reason);
+        executor.execute(() -> {
+            try {
+                rejectionHandler.accept(update);
+            } catch (Exception e) {
+                logger.error("Error handling rejected update {}", update.updateId(), e);
+            }
+        });
+    }
+
+    private void drain(ChatLane lane) {
+        while (true) {
+            QueuedUpdate head;
+            synchronized (lane) {
+                head = lane.updates.peek();
+                if (head == null) {
+                    lane.scheduled = false;
+                    lane.retired = true;
+                    lanes.remove(lane.chatId, lane);
+                    return;
+                }
+            }
+
+            // Слот запрашивается на каждое обновление с приоритетом головы очереди,
+            // чтобы длинная очередь просмотра не удерживала слот перед действиями организаторов
+            try {
+                gate.acquire(head.route.priority());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+
+            try {
+                synchronized (lane) {
+                    lane.updates.poll();
+                }
+                queuedUpdates.decrementAndGet();
+                queueWait.get(head.route.priority()).record(System.nanoTime() - head.enqueuedAt, TimeUnit.NANOSECONDS);
+
+                inFlight.incrementAndGet();
+                try {
+                    handler.accept(head.update, head.route);
+                } catch (Exception e) {
+                    logger.error("Error processing update {} for chatId {}", head.update.updateId(), lane.chatId, e);
+                } finally {
+                    inFlight.decrementAndGet();
+                }
+            } finally {
+                gate.release();
+            }
+        }
+    }
+
+    /**
+     * Определяет чат, к которому относится обновление. Обновления без чата
+     * получают собственную очередь по update_id и не ждут друг друга.
+     */
+    static long resolveChatId(Update update) {
+        if (update.message() != null && update.message().chat() != null) {
+            return update.message().chat().id();
+        }
+        if (update.callbackQuery() != null && update.callbackQuery().from() != null) {
+            return update.callbackQuery().from().id();
+        }
+        if (update.myChatMember() != null && update.myChatMember().chat() != null) {
+            return update.myChatMember().chat().id();
+        }
+        return Long.MIN_VALUE + update.updateId();
+    }
+
+    public int getQueuedUpdates() {
+        return queuedUpdates.get();
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        executor.shutdown();
+        if (!executor.awaitTermination(10, TimeUnit.SECONDS)) {
+            logger.warn("UpdateDispatcher did not finish in time, {} updates left in queue", queuedUpdates.get());
+            executor.shutdownNow();
+        }
+    }
+
+    private record QueuedUpdate(Update update, UpdateRoute route, long enqueuedAt) {
+    }
+
+    private static final class ChatLane {
+        private final long chatId;
+        private final Queue<QueuedUpdate> updates = new ArrayDeque<>();
+        private boolean scheduled;
+        private boolean retired;
+
+        private ChatLane(long chatId) {
+            this.chatId = chatId;
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package ru.unithack.bot.infrastructure.telegram;
+
+/**
+ * Класс приоритета входящего обновления. Порядок констант задает приоритет:
+ * первые обрабатываются раньше. При перегрузке отбрасываются только классы
+ * с долей очереди меньше 1.0, остальные принимаются всегда.
+ */
+public enum UpdatePriority {
+    /**
+     * Действия организаторов и администраторов: отметка посещения, управление мастер-классами
+     */
+    ORGANIZER(1.0),
+    /**
+     * Действия пользователя, меняющие данные: запись, отмена, подтверждение участия
+     */
+    TRANSACTIONAL(1.0),
+    /**
+     * Просмотр: справка, списки, информация
+     */
+    BROWSING(0.7);
+
+    private final double admissionShare;
+
+    UpdatePriority(double admissionShare) {
+        this.admissionShare = admissionShare;
+    }
+
+    /**
+     * Доля общей очереди, до заполнения которой обновления этого класса принимаются
+     */
+    public double getAdmissionShare() {
+        return admissionShare;
+    }
+
+    /**
+     * Можно ли отклонить обновление этого класса при переполнении общей очереди или очереди чата
+     */
+    public boolean isSheddable() {
+        return admissionShare < 1.0;
+    }
+}
@@ -0,0 +1,126 @@
+package ru.unithack.bot.infrastructure.telegram;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Ограничивает частоту команд: отдельное ведро токенов на каждый чат
+ * и общее ведро для дорогих команд, которые читают из базы много данных.
+ * Действия организаторов и изменения данных расходуют свое, более емкое ведро чата,
+ * чтобы просмотр списков не мешал записи, но спам такими действиями тоже ограничивался.
+ * Ведра простаивающих чатов периодически удаляются.
+ */
+@Component
+public class UpdateRateLimiter {
+
+    private static final Logger logger = LoggerFactory.getLogger(UpdateRateLimiter.class);
+
+    public enum Result {
+        ALLOWED,
+        /**
+         * Запрос отклонен, пользователь уже предупрежден
+         */
+        REJECTED,
+        /**
+         * Первый отклоненный запрос после разрешенного - пользователя стоит предупредить
+         */
+        REJECTED_NOTIFY
+    }
+
+    private final Map<Long, ChatBucket> chatBuckets = new ConcurrentHashMap<>();
+    private final TokenBucket expensiveBucket;
+    private final int chatCapacity;
+    private final double chatPermitsPerSecond;
+    private final int priorityCapacity;
+    private final double priorityPermitsPerSecond;
+    private final Counter chatRejected;
+    private final Counter expensiveRejected;
+
+    @Autowired
+    public UpdateRateLimiter(@Value("${app.rate-limit.chat.capacity:10}") int chatCapacity,
+                             @Value("${app.rate-limit.chat.permits-per-second:1}") double chatPermitsPerSecond,
+                             @Value("${app.rate-limit.priority.capacity:30}") int priorityCapacity,
+                             @Value("${app.rate-limit.priority.permits-per-second:3}") double priorityPermitsPerSecond,
+                             @Value("${app.rate-limit.expensive.capacity:40}") int expensiveCapacity,
+                             @Value("${app.rate-limit.expensive.permits-per-second:20}") double expensivePermitsPerSecond,
+                             MeterRegistry meterRegistry) {
+        this.chatCapacity = chatCapacity;
+        this.chatPermitsPerSecond = chatPermitsPerSecond;
+        this.priorityCapacity = priorityCapacity;
+        this.priorityPermitsPerSecond = priorityPermitsPerSecond;
+        this.expensiveBucket = new TokenBucket(expensiveCapacity, expensivePermitsPerSecond);
+
+        this.chatRejected = Counter.builder("bot.ratelimit.rejected")
+                .description("Requests rejected by the rate limiter")
+                .tag("scope", "chat")
+                .register(meterRegistry);
+        this.expensiveRejected = Counter.builder("bot.ratelimit.rejected")
+                .description("Requests rejected by the rate limiter")
+                .tag("scope", "expensive")
+                .register(meterRegistry);
+        Gauge.builder("bot.ratelimit.tracked_chats", chatBuckets, Map::size)
+                .description("Chats tracked by the rate limiter")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Проверяет лимиты для запроса из чата. Токены списываются из обоих ведер или ни из одного:
+     * запрос, отклоненный общим ведром, не расходует бюджет чата
+     * @param expensive запрос выполняет тяжелый запрос к базе и расходует общий бюджет
+     * @param priority действие организатора или изменение данных, расходует ведро приоритетных действий чата
+     */
+    public Result tryAcquire(long chatId, boolean expensive, boolean priority) {
+        ChatBucket bucket = chatBuckets.computeIfAbsent(chatId, id -> new ChatBucket(
+                new TokenBucket(chatCapacity, chatPermitsPerSecond),
+                new TokenBucket(priorityCapacity, priorityPermitsPerSecond)));
+        TokenBucket tokens = priority ? bucket.priorityTokens : bucket.tokens;
+
+        if (!tokens.tryAcquire()) {
+            chatRejected.increment();
+            return bucket.reject();
+        }
+        if (expensive && !expensiveBucket.tryAcquire()) {
+            tokens.refund();
+            expensiveRejected.increment();
+            return bucket.reject();
+        }
+
+        bucket.warned.set(false);
+        return Result.ALLOWED;
+    }
+
+    /**
+     * Удаляет ведра чатов, которые полностью восстановились.
+     * Новое ведро для такого чата будет в том же состоянии, поэтому гонка с tryAcquire безопасна
+     */
+    @Scheduled(fixedRate = 60000)
+    public void evictIdle() {
+        int before = chatBuckets.size();
+        chatBuckets.values().removeIf(bucket -> bucket.tokens.isIdle() && bucket.priorityTokens.isIdle());
+        int evicted = before - chatBuckets.size();
+        if (evicted > 0) {
+            logger.debug("Evicted {} idle rate limit buckets", evicted);
+        }
+    }
+
+    private record ChatBucket(TokenBucket tokens, TokenBucket priorityTokens, AtomicBoolean warned) {
+        private ChatBucket(TokenBucket tokens, TokenBucket priorityTokens) {
+            this(tokens, priorityTokens, new AtomicBoolean());
+        }
+
+        private Result reject() {
+            return warned.compareAndSet(false, true) ? Result.REJECTED_NOTIFY : Result.REJECTED;
+        }
+    }
+}
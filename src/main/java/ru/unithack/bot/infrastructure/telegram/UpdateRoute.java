@@ -0,0 +1,8 @@
+package ru.unithack.bot.infrastructure.telegram;
+
+/**
+ * Результат классификации обновления: приоритет и действие обработки. Действие уже получило
+ * данные, разобранные при классификации, поэтому обработка не разбирает обновление повторно
+ */
+public record UpdateRoute(UpdatePriority priority, Runnable action) {
+}
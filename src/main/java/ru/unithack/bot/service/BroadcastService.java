@@ -0,0 +1,280 @@
+package ru.unithack.bot.service;
+
+import com.pengrad.telegrambot.request.EditMessageText;
+import com.pengrad.telegrambot.request.SendMessage;
+import com.pengrad.telegrambot.response.SendResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.unithack.bot.domain.enums.BroadcastStatus;
+import ru.unithack.bot.domain.enums.DeliveryStatus;
+import ru.unithack.bot.domain.model.BroadcastDelivery;
+import ru.unithack.bot.domain.model.BroadcastJob;
+import ru.unithack.bot.domain.model.NewsPost;
+import ru.unithack.bot.domain.projection.BroadcastRecipient;
+import ru.unithack.bot.infrastructure.repository.BroadcastDeliveryRepository;
+import ru.unithack.bot.infrastructure.repository.BroadcastJobRepository;
+import ru.unithack.bot.infrastructure.repository.NewsPostRepository;
+import ru.unithack.bot.infrastructure.repository.UserRepository;
+import ru.unithack.bot.infrastructure.telegram.TelegramSender;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Рассылка новостей всем пользователям.
+ * <p>
+ * Получатели читаются порциями по возрастанию user_id, для каждого записывается строка
+ * в broadcast_deliveries, и только затем сообщение уходит в очередь отправки. Следующая
+ * порция берется, когда предыдущая почти отправлена, поэтому ни память, ни соединение с базой
+ * не удерживаются на всю рассылку. Переданная в очередь отправки строка помечается SENDING,
+ * а завершение доставки и счетчик рассылки меняются в одной транзакции, как только Telegram ответил.
+ * После перезапуска незавершенные строки SENDING возвращаются в PENDING и отправляются заново
+ * вместе с остальными: новость доходит хотя бы один раз, а повтор возможен только для сообщения,
+ * отправленного перед самой остановкой. Выборка продолжается с сохраненного курсора.
+ */
+@Service
+public class BroadcastService {
+
+    private static final Logger logger = LoggerFactory.getLogger(BroadcastService.class);
+
+    private final BroadcastJobRepository broadcastJobRepository;
+    private final BroadcastDeliveryRepository broadcastDeliveryRepository;
+    private final UserRepository userRepository;
+    private final NewsPostRepository newsPostRepository;
+    private final NewsDeliveryService newsDeliveryService;
+    private final TelegramSender telegramSender;
+    private final TransactionTemplate transactionTemplate;
+    private final Map<Long, JobRuntime> runtimes = new ConcurrentHashMap<>();
+    private final int chunkSize;
+    private final long progressIntervalMillis;
+
+    @Autowired
+    public BroadcastService(BroadcastJobRepository broadcastJobRepository,
+                            BroadcastDeliveryRepository broadcastDeliveryRepository,
+                            UserRepository userRepository,
+                            NewsPostRepository newsPostRepository,
+                            NewsDeliveryService newsDeliveryService,
+                            TelegramSender telegramSender,
+                            TransactionTemplate transactionTemplate,
+                            @Value("${app.broadcast.chunk-size:200}") int chunkSize,
+                            @Value("${app.broadcast.progress-interval-ms:10000}") long progressIntervalMillis) {
+        this.broadcastJobRepository = broadcastJobRepository;
+        this.broadcastDeliveryRepository = broadcastDeliveryRepository;
+        this.userRepository = userRepository;
+        this.newsPostRepository = newsPostRepository;
+        this.newsDeliveryService = newsDeliveryService;
+        this.telegramSender = telegramSender;
+        this.transactionTemplate = transactionTemplate;
+        this.chunkSize = chunkSize;
+        this.progressIntervalMillis = progressIntervalMillis;
+    }
+
+    /**
+     * Создает рассылку и отправляет автору сообщение, в котором будет отображаться прогресс
+     */
+    public BroadcastJob startBroadcast(NewsPost newsPost, String text, Long authorChatId) {
+        int total = userRepository.countBroadcastRecipients();
+        BroadcastJob job = broadcastJobRepository.save(new BroadcastJob(newsPost, text, authorChatId, total));
+        logger.info("Started broadcast {} for news {} to {} recipients", job.getId(), newsPost.getId(), total);
+
+        Long jobId = job.getId();
+        telegramSender.send(authorChatId, new SendMessage(authorChatId, formatProgress(job)))
+                .thenAccept(response -> {
+                    if (response.isOk()) {
+                        broadcastJobRepository.updateProgressMessageId(jobId, response.message().messageId());
+                    }
+                });
+        return job;
+    }
+
+    /**
+     * Продвигает все активные рассылки на одну порцию
+     */
+    @Scheduled(fixedDelayString = "${app.broadcast.tick-ms:1000}")
+    public void advanceJobs() {
+        for (BroadcastJob job : broadcastJobRepository.findByStatusOrderByIdAsc(BroadcastStatus.RUNNING)) {
+            try {
+                advance(job);
+            } catch (Exception e) {
+                logger.error("Error advancing broadcast {}", job.getId(), e);
+            }
+        }
+    }
+
+    private void advance(BroadcastJob job) {
+        JobRuntime runtime = runtimes.computeIfAbsent(job.getId(), id -> resume(job));
+
+        // job прочитан вне транзакции и только читается; изменения вносятся в перечитанную сущность
+        boolean exhausted = job.isRecipientsExhausted();
+        if (!exhausted && runtime.inFlight.get() < chunkSize) {
+            List<BroadcastDelivery> chunk = transactionTemplate.execute(status -> materializeChunk(job.getId()));
+            deliverAll(job, chunk, runtime);
+            exhausted = chunk.isEmpty();
+        }
+
+        long now = System.currentTimeMillis();
+        if (exhausted && runtime.inFlight.get() == 0) {
+            finish(job.getId());
+        } else if (now - runtime.lastProgressAt >= progressIntervalMillis) {
+            runtime.lastProgressAt = now;
+            broadcastJobRepository.findById(job.getId()).ifPresent(this::updateProgress);
+        }
+    }
+
+    /**
+     * Сохраняет следующую порцию получателей и сдвигает курсор в одной транзакции
+     */
+    private List<BroadcastDelivery> materializeChunk(Long jobId) {
+        BroadcastJob job = broadcastJobRepository.findById(jobId).orElseThrow();
+        List<BroadcastRecipient> recipients = userRepository.findBroadcastRecipients(
+                job.getCursorUserId(), PageRequest.of(0, chunkSize));
+        if (recipients.isEmpty()) {
+            job.setRecipientsExhausted(true);
+            return List.of();
+        }
+
+        List<BroadcastDelivery> deliveries = new ArrayList<>(recipients.size());
+        for (BroadcastRecipient recipient : recipients) {
+            deliveries.add(new BroadcastDelivery(jobId, recipient.userId(), recipient.chatId()));
+        }
+        job.setCursorUserId(recipients.get(recipients.size() - 1).userId());
+        return broadcastDeliveryRepository.saveAll(deliveries);
+    }
+
+    /**
+     * Восстанавливает рассылку после перезапуска: отправляет доставки, не переданные в очередь
+     * отправки, и прерванные на отправке
+     */
+    private JobRuntime resume(BroadcastJob job) {
+        // Новость нужна ради изображения: его file_id общий для всех получателей
+        NewsPost newsPost = job.getNewsPost() != null
+                ? newsPostRepository.findById(job.getNewsPost().getId()).orElse(null) : null;
+        JobRuntime runtime = new JobRuntime(newsPost);
+
+        int interrupted = broadcastDeliveryRepository.requeueInterrupted(job.getId());
+        if (interrupted > 0) {
+            logger.warn("Broadcast {}: {} deliveries were interrupted by a restart and will be sent again",
+                    job.getId(), interrupted);
+        }
+
+        long afterId = 0;
+        int resumed = 0;
+        while (true) {
+            List<BroadcastDelivery> pending = broadcastDeliveryRepository.findPendingAfter(
+                    job.getId(), afterId, PageRequest.of(0, chunkSize));
+            if (pending.isEmpty()) {
+                break;
+            }
+            deliverAll(job, pending, runtime);
+            afterId = pending.get(pending.size() - 1).getId();
+            resumed += pending.size();
+        }
+
+        if (resumed > 0) {
+            logger.info("Resumed broadcast {} with {} pending deliveries", job.getId(), resumed);
+        }
+        return runtime;
+    }
+
+    private void deliverAll(BroadcastJob job, List<BroadcastDelivery> deliveries, JobRuntime runtime) {
+        if (deliveries.isEmpty()) {
+            return;
+        }
+        broadcastDeliveryRepository.markSending(deliveries.stream().map(BroadcastDelivery::getId).toList());
+        for (BroadcastDelivery delivery : deliveries) {
+            deliver(job, delivery, runtime);
+        }
+    }
+
+    private void deliver(BroadcastJob job, BroadcastDelivery delivery, JobRuntime runtime) {
+        runtime.inFlight.incrementAndGet();
+        Long jobId = job.getId();
+        CompletableFuture<SendResponse> sent = runtime.newsPost != null
+                ? newsDeliveryService.send(runtime.newsPost, job.getText(), delivery.getChatId(), true)
+                : telegramSender.sendBulk(delivery.getChatId(), new SendMessage(delivery.getChatId(), job.getText()));
+        sent.whenComplete((response, error) -> {
+            boolean ok = error == null && response.isOk();
+            try {
+                // Счетчик меняется только вместе со статусом, поэтому повторное завершение его не сдвигает
+                transactionTemplate.executeWithoutResult(status -> {
+                    if (broadcastDeliveryRepository.complete(delivery.getId(),
+                            ok ? DeliveryStatus.SENT : DeliveryStatus.FAILED, LocalDateTime.now()) == 0) {
+                        return;
+                    }
+                    if (ok) {
+                        broadcastJobRepository.incrementSent(jobId);
+                    } else {
+                        broadcastJobRepository.incrementFailed(jobId);
+                    }
+                });
+            } finally {
+                runtime.inFlight.decrementAndGet();
+            }
+        });
+    }
+
+    private void finish(Long jobId) {
+        transactionTemplate.executeWithoutResult(status -> broadcastJobRepository.findById(jobId).ifPresent(job -> {
+            job.setStatus(BroadcastStatus.COMPLETED);
+            job.setFinishedAt(LocalDateTime.now());
+            updateProgress(job);
+            logger.info("Broadcast {} completed: {} sent, {} failed", jobId, job.getSentCount(), job.getFailedCount());
+        }));
+        runtimes.remove(jobId);
+    }
+
+    private void updateProgress(BroadcastJob job) {
+        if (job.getProgressMessageId() == null) {
+            return;
+        }
+        telegramSender.send(job.getAuthorChatId(),
+                new EditMessageText(job.getAuthorChatId(), job.getProgressMessageId(), formatProgress(job)));
+    }
+
+    private String formatProgress(BroadcastJob job) {
+        int done = job.getSentCount() + job.getFailedCount();
+        int total = Math.max(job.getTotalRecipients(), done);
+
+        if (job.getStatus() == BroadcastStatus.COMPLETED) {
+            return String.format("✅ Рассылка новости завершена\n\nДоставлено: %d из %d\nНе доставлено: %d",
+                    job.getSentCount(), total, job.getFailedCount());
+        }
+
+        StringBuilder text = new StringBuilder("📤 Рассылка новости\n\n");
+        text.append(String.format("Отправлено: %d из %d (%d%%)\n", done, total, total == 0 ? 100 : done * 100 / total));
+        if (job.getFailedCount() > 0) {
+            text.append("Не доставлено: ").append(job.getFailedCount()).append("\n");
+        }
+
+        long elapsedSeconds = Duration.between(job.getCreatedAt(), LocalDateTime.now()).toSeconds();
+        if (done > 0 && elapsedSeconds > 0) {
+            long etaSeconds = (long) ((total - done) * (double) elapsedSeconds / done);
+            text.append(String.format("Осталось примерно: %d мин %02d сек", etaSeconds / 60, etaSeconds % 60));
+        } else {
+            text.append("Оценка времени появится после первых отправок");
+        }
+        return text.toString();
+    }
+
+    private static final class JobRuntime {
+        private final NewsPost newsPost;
+        private final AtomicInteger inFlight = new AtomicInteger();
+        private volatile long lastProgressAt = System.currentTimeMillis();
+
+        private JobRuntime(NewsPost newsPost) {
+            this.newsPost = newsPost;
+        }
+    }
+}
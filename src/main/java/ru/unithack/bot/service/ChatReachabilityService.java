@@ -0,0 +1,93 @@
+package ru.unithack.bot.service;
+
+import com.pengrad.telegrambot.model.ChatMember;
+import com.pengrad.telegrambot.model.ChatMemberUpdated;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import ru.unithack.bot.infrastructure.repository.UserRepository;
+import ru.unithack.bot.infrastructure.telegram.TelegramSender;
+
+/**
+ * Отслеживает, можно ли писать пользователю. Чат помечается недоступным по ответу 403
+ * на отправку или по обновлению my_chat_member о блокировке бота и снова доступным,
+ * когда пользователь разблокирует бота или снова пишет ему. Недоступные чаты не попадают
+ * в выборки получателей рассылок, напоминаний и уведомлений.
+ */
+@Service
+public class ChatReachabilityService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ChatReachabilityService.class);
+
+    private final UserRepository userRepository;
+    private final UserService userService;
+    private final UserSessionCache sessionCache;
+    private final Counter blocked;
+    private final Counter unblocked;
+
+    @Autowired
+    public ChatReachabilityService(UserRepository userRepository,
+                                   UserService userService,
+                                   UserSessionCache sessionCache,
+                                   MeterRegistry meterRegistry) {
+        this.userRepository = userRepository;
+        this.userService = userService;
+        this.sessionCache = sessionCache;
+        this.blocked = Counter.builder("bot.chats.reachability")
+                .description("Chats marked as unreachable or reachable again")
+                .tag("change", "blocked")
+                .register(meterRegistry);
+        this.unblocked = Counter.builder("bot.chats.reachability")
+                .description("Chats marked as unreachable or reachable again")
+                .tag("change", "unblocked")
+                .register(meterRegistry);
+    }
+
+    @EventListener
+    public void onChatUnreachable(TelegramSender.ChatUnreachable event) {
+        if (userRepository.updateReachable(event.chatId(), false) > 0) {
+            sessionCache.invalidate(event.chatId());
+            blocked.increment();
+            logger.info("Chat {} marked unreachable: {}", event.chatId(), event.description());
+        }
+    }
+
+    /**
+     * Пользователь прислал сообщение или нажал кнопку, значит, бот не заблокирован.
+     * Доступность берется из кеша сессии, поэтому для доступного чата запросов к базе нет
+     */
+    public void onInboundUpdate(long chatId) {
+        userService.findSnapshotByChatId(chatId)
+                .filter(snapshot -> !snapshot.reachable())
+                .ifPresent(snapshot -> {
+                    if (userRepository.updateReachable(chatId, true) > 0) {
+                        unblocked.increment();
+                        logger.info("Chat {} marked reachable after an inbound update", chatId);
+                    }
+                    sessionCache.invalidate(chatId);
+                });
+    }
+
+    /**
+     * Обрабатывает изменение статуса бота в личном чате с пользователем
+     */
+    public void onMyChatMember(ChatMemberUpdated update) {
+        if (update.chat() == null || update.newChatMember() == null) {
+            return;
+        }
+        long chatId = update.chat().id();
+        ChatMember.Status status = update.newChatMember().status();
+        boolean reachable = status != ChatMember.Status.kicked && status != ChatMember.Status.left;
+
+        if (userRepository.updateReachable(chatId, reachable) > 0) {
+            sessionCache.invalidate(chatId);
+            (reachable ? unblocked : blocked).increment();
+            logger.info("Chat {} marked {} after bot status changed to {}",
+                    chatId, reachable ? "reachable" : "unreachable", status);
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package ru.unithack.bot.service;
+
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import ru.unithack.bot.domain.projection.ConfirmationDeadline;
+import ru.unithack.bot.infrastructure.repository.WorkshopRegistrationRepository;
+import ru.unithack.bot.infrastructure.scheduling.TimerWheel;
+
+import java.time.ZoneId;
+import java.util.List;
+
+/**
+ * Истечение сроков подтверждения участия из листа ожидания.
+ * Таймер ставится, когда участникам предлагается место, и срабатывает точно в срок;
+ * пока никому не предложено место, к базе данных не выполняется ни одного запроса.
+ * При запуске таймеры восстанавливаются по незавершенным срокам из базы.
+ */
+@Component
+public class ConfirmationExpiryScheduler {
+
+    private static final Logger logger = LoggerFactory.getLogger(ConfirmationExpiryScheduler.class);
+
+    private final WorkshopRegistrationRepository registrationRepository;
+    private final WorkshopService workshopService;
+    private final TimerWheel timerWheel;
+
+    @Autowired
+    public ConfirmationExpiryScheduler(WorkshopRegistrationRepository registrationRepository,
+                                       WorkshopService workshopService,
+                                       TimerWheel timerWheel) {
+        this.registrationRepository = registrationRepository;
+        this.workshopService = workshopService;
+        this.timerWheel = timerWheel;
+    }
+
+    @PostConstruct
+    public void init() {
+        List<ConfirmationDeadline> deadlines = registrationRepository.findPendingConfirmationDeadlines();
+        deadlines.forEach(this::schedule);
+        if (!deadlines.isEmpty()) {
+            logger.info("Restored {} confirmation deadlines", deadlines.size());
+        }
+    }
+
+    /**
+     * Срабатывает после фиксации транзакции, в которой участникам предложили место
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onDeadlineSet(ConfirmationDeadline deadline) {
+        schedule(deadline);
+    }
+
+    private void schedule(ConfirmationDeadline deadline) {
+        // У разных раундов предложений одного мастер-класса свои таймеры
+        String key = "confirmation-deadline:" + deadline.workshopId() + ":"
+                + deadline.deadline().atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        timerWheel.schedule(key, deadline.deadline(), () -> workshopService.expireConfirmations(deadline.workshopId()));
+    }
+}
@@ -0,0 +1,162 @@
+package ru.unithack.bot.service;
+
+import com.pengrad.telegrambot.model.PhotoSize;
+import com.pengrad.telegrambot.request.SendMessage;
+import com.pengrad.telegrambot.request.SendPhoto;
+import com.pengrad.telegrambot.response.SendResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import ru.unithack.bot.domain.model.NewsPost;
+import ru.unithack.bot.infrastructure.repository.NewsPostRepository;
+import ru.unithack.bot.infrastructure.telegram.TelegramSender;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.time.format.DateTimeFormatter;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Отправка новости в чат вместе с изображением.
+ * <p>
+ * Файл изображения загружается в Telegram только один раз: file_id из ответа сохраняется
+ * в NewsPost, и все остальные получатели получают фото по этому file_id. Пока первая
+ * загрузка не завершилась, параллельные отправки той же новости ждут ее результат.
+ */
+@Service
+public class NewsDeliveryService {
+
+    private static final Logger logger = LoggerFactory.getLogger(NewsDeliveryService.class);
+    private static final DateTimeFormatter DATE_TIME_FORMATTER = DateTimeFormatter.ofPattern("dd.MM.yyyy HH:mm");
+    // Telegram ограничивает подпись к фото 1024 символами
+    private static final int MAX_CAPTION_LENGTH = 1024;
+
+    private final NewsPostRepository newsPostRepository;
+    private final TelegramSender telegramSender;
+    private final Map<Long, CompletableFuture<String>> uploads = new ConcurrentHashMap<>();
+
+    @Autowired
+    public NewsDeliveryService(NewsPostRepository newsPostRepository, TelegramSender telegramSender) {
+        this.newsPostRepository = newsPostRepository;
+        this.telegramSender = telegramSender;
+    }
+
+    /**
+     * Форматирует текст новости. Мастер-класс новости должен быть загружен
+     */
+    public String formatNewsMessage(NewsPost newsPost) {
+        StringBuilder message = new StringBuilder();
+
+        message.append("📢 *").append(newsPost.getTitle()).append("*\n\n");
+        message.append(newsPost.getContent()).append("\n\n");
+
+        if (!newsPost.isGlobal() && newsPost.getWorkshop() != null) {
+            message.append("🔹 Мастер-класс: ").append(newsPost.getWorkshop().getTitle()).append("\n");
+        }
+
+        message.append("🕒 ").append(newsPost.getCreatedAt().format(DATE_TIME_FORMATTER));
+
+        return message.toString();
+    }
+
+    public CompletableFuture<SendResponse> send(NewsPost newsPost, long chatId, boolean bulk) {
+        return send(newsPost, formatNewsMessage(newsPost), chatId, bulk);
+    }
+
+    /**
+     * Отправляет новость с уже отформатированным текстом
+     * @return future последнего отправленного сообщения
+     */
+    public CompletableFuture<SendResponse> send(NewsPost newsPost, String text, long chatId, boolean bulk) {
+        if (!newsPost.hasImage()) {
+            return submit(chatId, new SendMessage(chatId, text), bulk);
+        }
+
+        String fileId = newsPost.getImageFileId();
+        if (fileId != null) {
+            return sendByFileId(fileId, text, chatId, bulk);
+        }
+
+        // Первый получатель загружает файл, остальные дожидаются его file_id
+        CompletableFuture<String> myUpload = new CompletableFuture<>();
+        CompletableFuture<String> upload = uploads.putIfAbsent(newsPost.getId(), myUpload);
+        if (upload != null) {
+            return upload.thenCompose(uploadedFileId -> uploadedFileId != null
+                    ? sendByFileId(uploadedFileId, text, chatId, bulk)
+                    : submit(chatId, new SendMessage(chatId, text), bulk));
+        }
+        return upload(newsPost, text, chatId, bulk, myUpload);
+    }
+
+    private CompletableFuture<SendResponse> upload(NewsPost newsPost, String text, long chatId, boolean bulk,
+                                               CompletableFuture<String> upload) {
+        byte[] image;
+        try {
+            image = Files.readAllBytes(Paths.get(newsPost.getImagePath()));
+        } catch (IOException e) {
+            logger.warn("Cannot read image {} of news {}: {}", newsPost.getImagePath(), newsPost.getId(), e.getMessage());
+            upload.complete(null);
+            uploads.remove(newsPost.getId(), upload);
+            return submit(chatId, new SendMessage(chatId, text), bulk);
+        }
+
+        boolean fitsCaption = text.length() <= MAX_CAPTION_LENGTH;
+        SendPhoto photo = new SendPhoto(chatId, image);
+        if (fitsCaption) {
+            photo.caption(text);
+        }
+
+        CompletableFuture<SendResponse> sent = submit(chatId, photo, bulk);
+        sent.whenComplete((response, error) -> {
+            String fileId = error == null ? largestPhotoFileId(response) : null;
+            if (fileId != null) {
+                newsPostRepository.updateImageFileId(newsPost.getId(), fileId);
+                newsPost.setImageFileId(fileId);
+                logger.info("Uploaded image of news {}, file_id cached", newsPost.getId());
+            }
+            upload.complete(fileId);
+            // При неудаче следующая отправка попробует загрузить файл заново
+            uploads.remove(newsPost.getId(), upload);
+        });
+
+        return fitsCaption ? sent : submit(chatId, new SendMessage(chatId, text), bulk);
+    }
+
+    private CompletableFuture<SendResponse> sendByFileId(String fileId, String text, long chatId, boolean bulk) {
+        if (text.length() <= MAX_CAPTION_LENGTH) {
+            return submit(chatId, new SendPhoto(chatId, fileId).caption(text), bulk);
+        }
+        // Длинный текст не помещается в подпись - отправляем фото и текст отдельными сообщениями
+        submit(chatId, new SendPhoto(chatId, fileId), bulk);
+        return submit(chatId, new SendMessage(chatId, text), bulk);
+    }
+
+    private CompletableFuture<SendResponse> submit(long chatId, SendMessage request, boolean bulk) {
+        return bulk ? telegramSender.sendBulk(chatId, request) : telegramSender.send(chatId, request);
+    }
+
+    private CompletableFuture<SendResponse> submit(long chatId, SendPhoto request, boolean bulk) {
+        return bulk ? telegramSender.sendBulk(chatId, request) : telegramSender.send(chatId, request);
+    }
+
+    private static String largestPhotoFileId(SendResponse response) {
+        if (response == null || !response.isOk() || response.message() == null) {
+            return null;
+        }
+        PhotoSize[] sizes = response.message().photo();
+        if (sizes == null || sizes.length == 0) {
+            return null;
+        }
+        PhotoSize largest = sizes[0];
+        for (PhotoSize size : sizes) {
+            if ((long) size.width() * size.height() > (long) largest.width() * largest.height()) {
+                largest = size;
+            }
+        }
+        return largest.fileId();
+    }
+}
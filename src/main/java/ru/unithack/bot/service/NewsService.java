@@ -19,7 +19,6 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.time.LocalDateTime;
-import java.time.format.DateTimeFormatter;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
@@ -29,22 +28,24 @@ import java.util.stream.Collectors;
 public class NewsService {
 
     private static final Logger logger = LoggerFactory.getLogger(NewsService.class);
-    private static final DateTimeFormatter DATE_TIME_FORMATTER = DateTimeFormatter.ofPattern("dd.MM.yyyy HH:mm");
 
     @Value("${app.uploads.news-images:/uploads/news}")
     private String newsImagesUploadPath;
 
     private final NewsPostRepository newsPostRepository;
     private final WorkshopRegistrationRepository workshopRegistrationRepository;
-    private final NotificationService notificationService;
+    private final NewsDeliveryService newsDeliveryService;
+    private final BroadcastService broadcastService;
 
     @Autowired
     public NewsService(NewsPostRepository newsPostRepository,
                        WorkshopRegistrationRepository workshopRegistrationRepository,
-                       NotificationService notificationService) {
+                       NewsDeliveryService newsDeliveryService,
+                       BroadcastService broadcastService) {
         this.newsPostRepository = newsPostRepository;
         this.workshopRegistrationRepository = workshopRegistrationRepository;
-        this.notificationService = notificationService;
+        this.newsDeliveryService = newsDeliveryService;
+        this.broadcastService = broadcastService;
     }
 
     /**
@@ -83,11 +84,12 @@ public class NewsService {
      * Создает глобальную новость для всех пользователей
      */
     @Transactional
-    public NewsPost createGlobalNews(String title, String content, String imagePath, User author) {
+    public NewsPost createGlobalNews(String title, String content, String imagePath, String imageFileId, User author) {
         NewsPost newsPost = new NewsPost();
         newsPost.setTitle(title);
         newsPost.setContent(content);
         newsPost.setImagePath(imagePath);
+        newsPost.setImageFileId(imageFileId);
         newsPost.setGlobal(true);
         newsPost.setCreatedBy(author);
         newsPost.setCreatedAt(LocalDateTime.now());
@@ -99,12 +101,13 @@ public class NewsService {
      * Создает новость для конкретного мастер-класса
      */
     @Transactional
-    public NewsPost createWorkshopNews(String title, String content, String imagePath, 
+    public NewsPost createWorkshopNews(String title, String content, String imagePath, String imageFileId,
                                      Workshop workshop, User author) {
         NewsPost newsPost = new NewsPost();
         newsPost.setTitle(title);
         newsPost.setContent(content);
         newsPost.setImagePath(imagePath);
+        newsPost.setImageFileId(imageFileId);
         newsPost.setGlobal(false);
         newsPost.setWorkshop(workshop);
         newsPost.setCreatedBy(author);
@@ -114,24 +117,11 @@ public class NewsService {
     }
 
     /**
-     * Отправляет уведомления о новой глобальной новости всем пользователям
+     * Запускает рассылку глобальной новости всем пользователям.
+     * Рассылка идет в фоне, прогресс отображается автору в отдельном сообщении
      */
-    @Transactional(readOnly = true)
-    public void notifyAllUsersAboutGlobalNews(NewsPost newsPost) {
-        // Формируем сообщение
-        String message = formatNewsMessage(newsPost);
-        
-        // Получаем всех пользователей с чат-идентификаторами
-        List<Long> allUserChatIds = workshopRegistrationRepository.findAllUserChatIds();
-        
-        // Отправляем уведомления
-        for (Long chatId : allUserChatIds) {
-            if (chatId != null) {
-                notificationService.sendMessageToUser(chatId, message);
-            }
-        }
-        
-        logger.info("Sent global news notification to {} users", allUserChatIds.size());
+    public void notifyAllUsersAboutGlobalNews(NewsPost newsPost, Long authorChatId) {
+        broadcastService.startBroadcast(newsPost, newsDeliveryService.formatNewsMessage(newsPost), authorChatId);
     }
 
     /**
@@ -140,7 +130,7 @@ public class NewsService {
     @Transactional(readOnly = true)
     public void notifyWorkshopParticipantsAboutNews(NewsPost newsPost) {
         // Формируем сообщение
-        String message = formatNewsMessage(newsPost);
+        String message = newsDeliveryService.formatNewsMessage(newsPost);
         
         // Получаем всех подтвержденных участников мастер-класса
         List<WorkshopRegistration> participants = workshopRegistrationRepository
@@ -150,7 +140,7 @@ public class NewsService {
         for (WorkshopRegistration registration : participants) {
             User user = registration.getUser();
             if (user.getUserInfo() != null && user.getUserInfo().getChatId() != null) {
-                notificationService.sendMessageToUser(user.getUserInfo().getChatId(), message);
+                newsDeliveryService.send(newsPost, message, user.getUserInfo().getChatId(), true);
             }
         }
         
@@ -158,24 +148,6 @@ public class NewsService {
                 newsPost.getWorkshop().getId(), participants.size());
     }
 
-    /**
-     * Форматирует сообщение для отправки новости
-     */
-    private String formatNewsMessage(NewsPost newsPost) {
-        StringBuilder message = new StringBuilder();
-        
-        message.append("📢 *").append(newsPost.getTitle()).append("*\n\n");
-        message.append(newsPost.getContent()).append("\n\n");
-        
-        if (!newsPost.isGlobal() && newsPost.getWorkshop() != null) {
-            message.append("🔹 Мастер-класс: ").append(newsPost.getWorkshop().getTitle()).append("\n");
-        }
-        
-        message.append("🕒 ").append(newsPost.getCreatedAt().format(DATE_TIME_FORMATTER));
-        
-        return message.toString();
-    }
-
     /**
      * Получает новость по ID
      */
@@ -0,0 +1,317 @@
+package ru.unithack.bot.service;
+
+import com.pengrad.telegrambot.request.SendMessage;
+import com.pengrad.telegrambot.response.SendResponse;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import ru.unithack.bot.domain.enums.OutboxStatus;
+import ru.unithack.bot.domain.model.OutboxMessage;
+import ru.unithack.bot.infrastructure.repository.OutboxMessageRepository;
+import ru.unithack.bot.infrastructure.telegram.TelegramSender;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+
+/**
+ * Переносит уведомления из таблицы notification_outbox в очередь отправки.
+ * Запускается после фиксации транзакции, записавшей уведомление, и периодически
+ * как страховка на случай остановки приложения между фиксацией и отправкой.
+ * За проход захватывается одна пачка не больше batchSize; пока очередь отправки
+ * длиннее maxSenderBacklog, новые записи не захватываются. Захват помечает записи токеном
+ * и временем, поэтому несколько экземпляров не отправляют одно сообщение дважды.
+ * Пока захваченные записи ждут в очереди отправки, экземпляр продлевает их аренду;
+ * записи упавшего экземпляра никто не продлевает, и по истечении аренды они возвращаются в очередь.
+ * <p>
+ * Срочные уведомления отправляются сразу. Несрочные ждут окно объединения: все несрочные
+ * уведомления чата, накопившиеся к его концу, склеиваются в одно сообщение (или в несколько,
+ * если текст не помещается в лимит Telegram), чтобы серия правок администратора
+ * не превращалась в серию отдельных сообщений. Срочное уведомление не обгоняет несрочные
+ * своего чата: накопившиеся до него уходят сразу, перед ним.
+ */
+@Component
+public class NotificationOutboxRelay {
+
+    private static final Logger logger = LoggerFactory.getLogger(NotificationOutboxRelay.class);
+
+    /**
+     * Событие о новом сообщении в outbox, публикуется внутри транзакции
+     */
+    public record MessageSaved(Long messageId, boolean urgent) {
+    }
+
+    private static final int MAX_MESSAGE_LENGTH = 4096;
+    private static final String DIGEST_SEPARATOR = "\n\n➖➖➖\n\n";
+    private static final long BACKLOG_RETRY_MILLIS = 1000;
+
+    private final OutboxMessageRepository outboxMessageRepository;
+    private final TelegramSender telegramSender;
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(
+            runnable -> new Thread(runnable, "notification-outbox"));
+    private final AtomicBoolean scheduled = new AtomicBoolean();
+    private final AtomicBoolean digestWakeScheduled = new AtomicBoolean();
+    // Токены захватов этого экземпляра и число их сообщений в очереди отправки
+    private final Map<String, Integer> inFlightClaims = new ConcurrentHashMap<>();
+    private final int batchSize;
+    private final int retentionHours;
+    private final long coalesceWindowMillis;
+    private final int maxSenderBacklog;
+    private final int claimLeaseSeconds;
+
+    @Autowired
+    public NotificationOutboxRelay(OutboxMessageRepository outboxMessageRepository,
+                                   TelegramSender telegramSender,
+                                   @Value("${app.outbox.batch-size:100}") int batchSize,
+                                   @Value("${app.outbox.retention-hours:48}") int retentionHours,
+                                   @Value("${app.outbox.coalesce-window-ms:5000}") long coalesceWindowMillis,
+                                   @Value("${app.outbox.max-sender-backlog:500}") int maxSenderBacklog,
+                                   @Value("${app.outbox.claim-lease-seconds:300}") int claimLeaseSeconds) {
+        this.outboxMessageRepository = outboxMessageRepository;
+        this.telegramSender = telegramSender;
+        this.batchSize = batchSize;
+        this.retentionHours = retentionHours;
+        this.coalesceWindowMillis = coalesceWindowMillis;
+        this.maxSenderBacklog = maxSenderBacklog;
+        this.claimLeaseSeconds = claimLeaseSeconds;
+    }
+
+    @PostConstruct
+    public void init() {
+        releaseExpired();
+        wake();
+    }
+
+    /**
+     * Срабатывает только после успешной фиксации транзакции: при откате уведомление
+     * удаляется вместе с остальными изменениями и не отправляется
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onMessageSaved(MessageSaved event) {
+        if (event.urgent()) {
+            wake();
+        } else {
+            scheduleDigestWake(coalesceWindowMillis);
+        }
+    }
+
+    /**
+     * Планирует проход к концу окна объединения. Если проход уже запланирован, он наступит
+     * не позже и сам запланирует следующий для оставшихся уведомлений
+     */
+    private void scheduleDigestWake(long delayMillis) {
+        if (digestWakeScheduled.compareAndSet(false, true)) {
+            executor.schedule(() -> {
+                digestWakeScheduled.set(false);
+                wake();
+            }, delayMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @Scheduled(fixedDelay = 30000)
+    public void poll() {
+        renewClaims();
+        releaseExpired();
+        wake();
+    }
+
+    private void renewClaims() {
+        if (!inFlightClaims.isEmpty()) {
+            outboxMessageRepository.renewClaims(List.copyOf(inFlightClaims.keySet()), LocalDateTime.now());
+        }
+    }
+
+    private void releaseExpired() {
+        int released = outboxMessageRepository.releaseExpired(LocalDateTime.now().minusSeconds(claimLeaseSeconds));
+        if (released > 0) {
+            logger.warn("Returned {} interrupted notifications to the outbox", released);
+        }
+    }
+
+    /**
+     * Запускает перенос, если он еще не запланирован. Несколько событий одной транзакции
+     * сливаются в один проход
+     */
+    public void wake() {
+        if (scheduled.compareAndSet(false, true)) {
+            executor.execute(() -> {
+                scheduled.set(false);
+                try {
+                    relay();
+                } catch (Exception e) {
+                    logger.error("Error relaying notifications from the outbox", e);
+                }
+            });
+        }
+    }
+
+    private void relay() {
+        if (telegramSender.getPending() >= maxSenderBacklog) {
+            // Очередь отправки и так длинная: записи подождут в базе, а не в памяти
+            executor.schedule(this::wake, BACKLOG_RETRY_MILLIS, TimeUnit.MILLISECONDS);
+            return;
+        }
+
+        List<OutboxMessage> urgent = outboxMessageRepository.findPendingUrgent(PageRequest.of(0, batchSize));
+        LocalDateTime createdBefore = LocalDateTime.now().minus(Duration.ofMillis(coalesceWindowMillis));
+        List<Long> digestChats = outboxMessageRepository.findDigestChats(createdBefore, PageRequest.of(0, batchSize));
+        int relayed = relayUrgent(urgent) + relayDigests(digestChats);
+        if (relayed > 0) {
+            logger.info("Relayed {} notifications from the outbox", relayed);
+        }
+        if (urgent.size() == batchSize || digestChats.size() == batchSize) {
+            // Следующую пачку заберет новый проход, после проверки очереди отправки
+            wake();
+            return;
+        }
+
+        // Несрочные уведомления, окно которых еще не закончилось, заберет следующий проход
+        outboxMessageRepository.findOldestPendingDigest().ifPresent(oldest -> {
+            long delay = Duration.between(LocalDateTime.now(), oldest.plus(Duration.ofMillis(coalesceWindowMillis))).toMillis();
+            scheduleDigestWake(Math.max(delay, 0));
+        });
+    }
+
+    private int relayUrgent(List<OutboxMessage> urgent) {
+        if (urgent.isEmpty()) {
+            return 0;
+        }
+
+        // Несрочные уведомления, записанные раньше срочных, захватываются вместе с ними
+        Set<Long> chatIds = urgent.stream().map(OutboxMessage::getChatId).collect(Collectors.toSet());
+        List<OutboxMessage> candidates = new ArrayList<>(urgent);
+        candidates.addAll(outboxMessageRepository.findPendingDigestBefore(chatIds, urgent.getLast().getId()));
+        candidates.sort(Comparator.comparing(OutboxMessage::getId));
+        String claimToken = UUID.randomUUID().toString();
+        return sendClaimed(claimToken, claim(claimToken, candidates));
+    }
+
+    private int relayDigests(List<Long> chatIds) {
+        if (chatIds.isEmpty()) {
+            return 0;
+        }
+        String claimToken = UUID.randomUUID().toString();
+        return sendClaimed(claimToken, claim(claimToken, outboxMessageRepository.findPendingDigest(chatIds)));
+    }
+
+    /**
+     * Отправляет захваченные записи по чатам в порядке id. Несрочные уведомления перед срочным
+     * склеиваются и уходят с тем же приоритетом, что и оно, чтобы очередь чата их не переставила
+     */
+    private int sendClaimed(String claimToken, List<OutboxMessage> claimed) {
+        Map<Long, List<OutboxMessage>> byChat = new LinkedHashMap<>();
+        for (OutboxMessage message : claimed) {
+            byChat.computeIfAbsent(message.getChatId(), chatId -> new ArrayList<>()).add(message);
+        }
+
+        for (Map.Entry<Long, List<OutboxMessage>> entry : byChat.entrySet()) {
+            Long chatId = entry.getKey();
+            List<OutboxMessage> digest = new ArrayList<>();
+            for (OutboxMessage message : entry.getValue()) {
+                if (!message.isUrgent()) {
+                    digest.add(message);
+                    continue;
+                }
+                sendDigest(claimToken, chatId, digest, message.isBulk());
+                digest.clear();
+                send(claimToken, chatId, message.getText(), message.isBulk(), List.of(message.getId()));
+            }
+            sendDigest(claimToken, chatId, digest, true);
+        }
+        return claimed.size();
+    }
+
+    /**
+     * Захватывает записи для отправки
+     * @return записи, захваченные этим проходом, по возрастанию id; взятые другим экземпляром пропускаются
+     */
+    private List<OutboxMessage> claim(String claimToken, List<OutboxMessage> candidates) {
+        if (candidates.isEmpty()) {
+            return candidates;
+        }
+
+        List<Long> ids = candidates.stream().map(OutboxMessage::getId).toList();
+        int claimed = outboxMessageRepository.markSending(ids, claimToken, LocalDateTime.now());
+        if (claimed == candidates.size()) {
+            return candidates;
+        }
+        return claimed == 0 ? List.of() : outboxMessageRepository.findByClaimToken(claimToken);
+    }
+
+    /**
+     * Склеивает уведомления чата в сообщения не длиннее лимита Telegram
+     * @param allowBulk можно ли отправить склейку с бюджетом рассылок, если все ее части - рассылки
+     */
+    private void sendDigest(String claimToken, Long chatId, List<OutboxMessage> messages, boolean allowBulk) {
+        StringBuilder text = new StringBuilder();
+        List<Long> ids = new ArrayList<>();
+        boolean bulk = allowBulk;
+        for (OutboxMessage message : messages) {
+            if (!ids.isEmpty() && text.length() + DIGEST_SEPARATOR.length() + message.getText().length() > MAX_MESSAGE_LENGTH) {
+                send(claimToken, chatId, text.toString(), bulk, ids);
+                text.setLength(0);
+                ids = new ArrayList<>();
+                bulk = allowBulk;
+            }
+            if (!ids.isEmpty()) {
+                text.append(DIGEST_SEPARATOR);
+            }
+            text.append(message.getText());
+            ids.add(message.getId());
+            bulk &= message.isBulk();
+        }
+        if (!ids.isEmpty()) {
+            send(claimToken, chatId, text.toString(), bulk, ids);
+        }
+    }
+
+    private void send(String claimToken, Long chatId, String text, boolean bulk, List<Long> messageIds) {
+        inFlightClaims.merge(claimToken, 1, Integer::sum);
+        SendMessage request = new SendMessage(chatId, text);
+        CompletableFuture<SendResponse> future = bulk
+                ? telegramSender.sendBulk(chatId, request)
+                : telegramSender.send(chatId, request);
+        future.whenComplete((response, error) -> {
+            OutboxStatus status = error == null && response.isOk() ? OutboxStatus.SENT : OutboxStatus.FAILED;
+            try {
+                outboxMessageRepository.complete(messageIds, claimToken, status, LocalDateTime.now());
+            } finally {
+                inFlightClaims.computeIfPresent(claimToken, (token, count) -> count == 1 ? null : count - 1);
+            }
+        });
+    }
+
+    @Scheduled(fixedRate = 3600000)
+    public void deleteCompleted() {
+        int deleted = outboxMessageRepository.deleteCompletedBefore(LocalDateTime.now().minusHours(retentionHours));
+        if (deleted > 0) {
+            logger.info("Deleted {} sent notifications from the outbox", deleted);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        executor.shutdown();
+        executor.awaitTermination(5, TimeUnit.SECONDS);
+    }
+}
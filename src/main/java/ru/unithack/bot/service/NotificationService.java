@@ -1,21 +1,19 @@
 package ru.unithack.bot.service;
 
-import com.pengrad.telegrambot.TelegramBot;
 import com.pengrad.telegrambot.request.SendMessage;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.beans.factory.annotation.Value;
-import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
+import ru.unithack.bot.domain.enums.ReminderKind;
+import ru.unithack.bot.domain.model.OutboxMessage;
 import ru.unithack.bot.domain.model.User;
 import ru.unithack.bot.domain.model.Workshop;
 import ru.unithack.bot.domain.model.WorkshopRegistration;
-import ru.unithack.bot.infrastructure.repository.WorkshopRepository;
-import ru.unithack.bot.infrastructure.repository.WorkshopRegistrationRepository;
+import ru.unithack.bot.infrastructure.repository.OutboxMessageRepository;
+import ru.unithack.bot.infrastructure.telegram.TelegramSender;
 
-import java.time.Duration;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.List;
@@ -26,44 +24,51 @@ public class NotificationService {
     private static final Logger logger = LoggerFactory.getLogger(NotificationService.class);
     private static final DateTimeFormatter DATE_TIME_FORMATTER = DateTimeFormatter.ofPattern("dd.MM.yyyy HH:mm");
     
-    @Value("${app.telegram-token}")
-    private String telegramToken;
-    
-    private TelegramBot telegramBot;
-    private final WorkshopRepository workshopRepository;
-    private final WorkshopRegistrationRepository registrationRepository;
+    private final TelegramSender telegramSender;
+    private final OutboxMessageRepository outboxMessageRepository;
+    private final ApplicationEventPublisher eventPublisher;
     
     @Autowired
-    public NotificationService(WorkshopRepository workshopRepository,
-                              WorkshopRegistrationRepository registrationRepository,
-                              @Value("${app.telegram-token}") String telegramToken) {
-        this.workshopRepository = workshopRepository;
-        this.registrationRepository = registrationRepository;
-        this.telegramToken = telegramToken;
-        this.telegramBot = new TelegramBot(telegramToken);
-        logger.info("NotificationService initialized with Telegram token");
+    public NotificationService(OutboxMessageRepository outboxMessageRepository,
+                              ApplicationEventPublisher eventPublisher,
+                              TelegramSender telegramSender) {
+        this.outboxMessageRepository = outboxMessageRepository;
+        this.eventPublisher = eventPublisher;
+        this.telegramSender = telegramSender;
     }
     
     /**
-     * Отправляет сообщение пользователю по его chatId
+     * Отправляет сообщение пользователю по его chatId.
+     * Сообщение ставится в очередь отправки и не теряется при ответе 429
      */
     public void sendMessageToUser(Long chatId, String message) {
-        try {
-            // Ensure telegramBot is initialized
-            if (telegramBot == null) {
-                telegramBot = new TelegramBot(telegramToken);
-                logger.info("Re-initialized telegramBot in sendMessageToUser");
-            }
-            
-            // Log the message being sent
-            logger.info("Sending message to chatId {}: {}", chatId, message.substring(0, Math.min(50, message.length())) + "...");
-            
-            // Используем без parseMode для совместимости, как в TelegramBotService
-            telegramBot.execute(new SendMessage(chatId, message));
-            logger.info("Message sent successfully to chatId {}", chatId);
-        } catch (Exception e) {
-            logger.error("Error sending message to chatId {}: {}", chatId, e.getMessage(), e);
-        }
+        logger.debug("Sending message to chatId {}: {}...", chatId, message.substring(0, Math.min(50, message.length())));
+        telegramSender.send(chatId, new SendMessage(chatId, message));
+    }
+    
+    /**
+     * Отправляет сообщение массовой рассылки (новости, напоминания, изменения мастер-класса).
+     * Такие сообщения идут с ограниченной скоростью и не задерживают ответы на команды
+     */
+    public void broadcastMessageToUser(Long chatId, String message) {
+        telegramSender.sendBulk(chatId, new SendMessage(chatId, message));
+    }
+    
+    /**
+     * Есть ли у пользователя чат, который не заблокировал бота
+     */
+    private boolean canNotify(User user) {
+        return user.getUserInfo() != null && user.getUserInfo().getChatId() != null && user.getUserInfo().isReachable();
+    }
+    
+    /**
+     * Записывает уведомление в outbox в текущей транзакции. Сообщение уйдет
+     * только после ее фиксации, при откате оно не будет отправлено.
+     * Несрочные уведомления одного чата, накопившиеся за окно объединения, уходят одним сообщением
+     */
+    private void enqueueMessageToUser(Long chatId, String message, boolean bulk, boolean urgent) {
+        OutboxMessage outboxMessage = outboxMessageRepository.save(new OutboxMessage(chatId, message, bulk, urgent));
+        eventPublisher.publishEvent(new NotificationOutboxRelay.MessageSaved(outboxMessage.getId(), urgent));
     }
     
     /**
@@ -74,7 +79,7 @@ public class NotificationService {
         Workshop workshop = registration.getWorkshop();
         Integer position = registration.getWaitlistPosition();
         
-        if (user.getUserInfo() != null && user.getUserInfo().getChatId() != null && position != null) {
+        if (canNotify(user) && position != null) {
             String message = String.format(
                 "⏳ Вы добавлены в лист ожидания на мастер-класс:\n" +
                 "📌 %s\n" +
@@ -86,8 +91,8 @@ public class NotificationService {
                 position
             );
             
-            sendMessageToUser(user.getUserInfo().getChatId(), message);
-            logger.info("Sent waitlist notification to user {}, position {}", user.getId(), position);
+            enqueueMessageToUser(user.getUserInfo().getChatId(), message, false, false);
+            logger.info("Queued waitlist notification to user {}, position {}", user.getId(), position);
         }
     }
     
@@ -99,7 +104,7 @@ public class NotificationService {
         Workshop workshop = registration.getWorkshop();
         LocalDateTime deadline = registration.getConfirmationDeadline();
         
-        if (user.getUserInfo() != null && user.getUserInfo().getChatId() != null && deadline != null) {
+        if (canNotify(user) && deadline != null) {
             String message = String.format(
                 "🎉 Появилось свободное место!\n\n" +
                 "На мастер-классе освободилось место. Вы и ещё %d человек(а) в листе ожидания получили это уведомление:\n" +
@@ -117,8 +122,8 @@ public class NotificationService {
                 deadline.format(DATE_TIME_FORMATTER)
             );
             
-            sendMessageToUser(user.getUserInfo().getChatId(), message);
-            logger.info("Sent confirmation request to all waitlisted users, including user {} for workshop {}", 
+            enqueueMessageToUser(user.getUserInfo().getChatId(), message, false, true);
+            logger.info("Queued confirmation request to all waitlisted users, including user {} for workshop {}", 
                 user.getId(), workshop.getId());
         }
     }
@@ -130,7 +135,7 @@ public class NotificationService {
         User user = registration.getUser();
         Workshop workshop = registration.getWorkshop();
         
-        if (user.getUserInfo() != null && user.getUserInfo().getChatId() != null) {
+        if (canNotify(user)) {
             String message = String.format(
                 "⏱ Место уже занято\n\n" +
                 "К сожалению, другой участник из листа ожидания подтвердил участие раньше вас:\n" +
@@ -141,8 +146,8 @@ public class NotificationService {
                 workshop.getStartTime().format(DATE_TIME_FORMATTER)
             );
             
-            sendMessageToUser(user.getUserInfo().getChatId(), message);
-            logger.info("Sent spot taken notification to user {} for workshop {}", 
+            enqueueMessageToUser(user.getUserInfo().getChatId(), message, false, true);
+            logger.info("Queued spot taken notification to user {} for workshop {}", 
                 user.getId(), workshop.getId());
         }
     }
@@ -154,7 +159,7 @@ public class NotificationService {
         User user = registration.getUser();
         Workshop workshop = registration.getWorkshop();
         
-        if (user.getUserInfo() != null && user.getUserInfo().getChatId() != null) {
+        if (canNotify(user)) {
             String message = String.format(
                 "⌛ Срок подтверждения истек\n\n" +
                 "К сожалению, вы не подтвердили участие в мастер-классе в течение 15 минут:\n" +
@@ -168,8 +173,8 @@ public class NotificationService {
                 workshop.getId()
             );
             
-            sendMessageToUser(user.getUserInfo().getChatId(), message);
-            logger.info("Sent confirmation expired notification to user {} for workshop {}", 
+            enqueueMessageToUser(user.getUserInfo().getChatId(), message, false, true);
+            logger.info("Queued confirmation expired notification to user {} for workshop {}", 
                 user.getId(), workshop.getId());
         }
     }
@@ -181,7 +186,7 @@ public class NotificationService {
         User user = registration.getUser();
         Workshop workshop = registration.getWorkshop();
         
-        if (user.getUserInfo() != null && user.getUserInfo().getChatId() != null) {
+        if (canNotify(user)) {
             String message = String.format(
                 "✅ Участие подтверждено!\n\n" +
                 "Вы успешно подтвердили участие в мастер-классе:\n" +
@@ -192,8 +197,8 @@ public class NotificationService {
                 workshop.getStartTime().format(DATE_TIME_FORMATTER)
             );
             
-            sendMessageToUser(user.getUserInfo().getChatId(), message);
-            logger.info("Sent registration confirmed notification to user {} for workshop {}", 
+            enqueueMessageToUser(user.getUserInfo().getChatId(), message, false, true);
+            logger.info("Queued registration confirmed notification to user {} for workshop {}", 
                 user.getId(), workshop.getId());
         }
     }
@@ -204,7 +209,7 @@ public class NotificationService {
     public void sendWorkshopUpdatedNotification(Workshop workshop, List<WorkshopRegistration> allParticipants) {
         for (WorkshopRegistration registration : allParticipants) {
             User user = registration.getUser();
-            if (user.getUserInfo() != null && user.getUserInfo().getChatId() != null) {
+            if (canNotify(user)) {
                 String waitlistInfo = registration.isWaitlist() ? 
                     String.format(" (вы в листе ожидания, позиция: %d)", 
                         registration.getWaitlistPosition() != null ? registration.getWaitlistPosition() : 0) : 
@@ -226,8 +231,8 @@ public class NotificationService {
                     workshop.getId()
                 );
                 
-                sendMessageToUser(user.getUserInfo().getChatId(), message);
-                logger.info("Sent workshop update notification to user {} for workshop {}", 
+                enqueueMessageToUser(user.getUserInfo().getChatId(), message, true, false);
+                logger.info("Queued workshop update notification to user {} for workshop {}", 
                     user.getId(), workshop.getId());
             }
         }
@@ -239,7 +244,7 @@ public class NotificationService {
     public void sendWorkshopDeletedNotification(Workshop workshop, List<WorkshopRegistration> allParticipants) {
         for (WorkshopRegistration registration : allParticipants) {
             User user = registration.getUser();
-            if (user.getUserInfo() != null && user.getUserInfo().getChatId() != null) {
+            if (canNotify(user)) {
                 String waitlistInfo = registration.isWaitlist() ? 
                     " (вы были в листе ожидания)" : "";
                 
@@ -254,102 +259,59 @@ public class NotificationService {
                     workshop.getStartTime().format(DATE_TIME_FORMATTER)
                 );
                 
-                sendMessageToUser(user.getUserInfo().getChatId(), message);
-                logger.info("Sent workshop deletion notification to user {} for workshop {}", 
+                enqueueMessageToUser(user.getUserInfo().getChatId(), message, true, false);
+                logger.info("Queued workshop deletion notification to user {} for workshop {}", 
                     user.getId(), workshop.getId());
             }
         }
     }
     
     /**
-     * Отправляет напоминание о мастер-классе всем зарегистрированным участникам
+     * Записывает напоминание о мастер-классе для всех зарегистрированных участников в outbox.
+     * Вызывается в транзакции, которая отмечает напоминание отправленным
      */
-    public void sendWorkshopReminder(Workshop workshop, List<WorkshopRegistration> participants) {
+    public void sendWorkshopReminder(Workshop workshop, List<WorkshopRegistration> participants, ReminderKind kind) {
         for (WorkshopRegistration registration : participants) {
-            if (registration.getUser().getUserInfo() != null && 
-                registration.getUser().getUserInfo().getChatId() != null) {
-                
+            if (canNotify(registration.getUser())) {
                 Long chatId = registration.getUser().getUserInfo().getChatId();
-                String message = String.format(
-                    "⏰ Напоминание о мастер-классе\n\n" +
-                    "Вы записаны на мастер-класс, который скоро начнется:\n" +
-                    "📌 %s\n" +
-                    "🕒 %s\n" +
-                    "📝 %s\n\n" +
-                    "Ждем вас!",
-                    workshop.getTitle(),
-                    workshop.getStartTime().format(DATE_TIME_FORMATTER),
-                    workshop.getDescription()
-                );
+                String message = kind == ReminderKind.DAY_BEFORE
+                        ? formatDayBeforeReminder(workshop)
+                        : formatHourBeforeReminder(workshop);
                 
-                sendMessageToUser(chatId, message);
-                logger.info("Sent workshop reminder to user {} for workshop {}", 
-                           registration.getUser().getId(), workshop.getId());
+                enqueueMessageToUser(chatId, message, true, false);
+                logger.debug("Queued {} reminder to user {} for workshop {}", 
+                           kind, registration.getUser().getId(), workshop.getId());
             }
         }
     }
     
-    /**
-     * Проверка и отправка напоминаний по расписанию (каждый час)
-     */
-    @Scheduled(fixedRate = 3600000) // Каждый час (3600000 мс)
-    @Transactional(readOnly = true)
-    public void sendScheduledReminders() {
-        logger.info("Running scheduled workshop reminders check");
-        
-        LocalDateTime now = LocalDateTime.now();
-        LocalDateTime oneDayFromNow = now.plusDays(1);
-        
-        // Получаем активные мастер-классы, которые начнутся в течение ближайших 24 часов
-        List<Workshop> upcomingWorkshops = workshopRepository.findByActiveTrueAndStartTimeBetween(
-            now, oneDayFromNow);
-        
-        for (Workshop workshop : upcomingWorkshops) {
-            List<WorkshopRegistration> participants = 
-                registrationRepository.findByWorkshopAndWaitlistFalseOrderByRegistrationTimeAsc(workshop);
-            
-            Duration timeUntilStart = Duration.between(now, workshop.getStartTime());
-            long hoursUntilStart = timeUntilStart.toHours();
-            
-            // Отправляем напоминание за 24 часа до начала
-            if (hoursUntilStart <= 24 && hoursUntilStart >= 23) {
-                sendDayBeforeReminder(workshop, participants);
-            }
-            
-            // Отправляем напоминание за 1 час до начала
-            if (hoursUntilStart <= 1 && timeUntilStart.toMinutes() >= 55) {
-                sendWorkshopReminder(workshop, participants);
-            }
-        }
+    private String formatHourBeforeReminder(Workshop workshop) {
+        return String.format(
+            "⏰ Напоминание о мастер-классе\n\n" +
+            "Вы записаны на мастер-класс, который скоро начнется:\n" +
+            "📌 %s\n" +
+            "🕒 %s\n" +
+            "📝 %s\n\n" +
+            "Ждем вас!",
+            workshop.getTitle(),
+            workshop.getStartTime().format(DATE_TIME_FORMATTER),
+            workshop.getDescription()
+        );
     }
     
-    /**
-     * Отправляет напоминание за день до мастер-класса
-     */
-    private void sendDayBeforeReminder(Workshop workshop, List<WorkshopRegistration> participants) {
-        for (WorkshopRegistration registration : participants) {
-            if (registration.getUser().getUserInfo() != null && 
-                registration.getUser().getUserInfo().getChatId() != null) {
-                
-                Long chatId = registration.getUser().getUserInfo().getChatId();
-                String message = String.format(
-                    "📅 Напоминание о мастер-классе завтра\n\n" +
-                    "Напоминаем, что завтра у вас мастер-класс:\n" +
-                    "📌 %s\n" +
-                    "🕒 %s\n" +
-                    "📝 %s\n\n" +
-                    "Если у вас изменились планы, вы можете отменить запись командой:\n" +
-                    "/cancel_workshop %d",
-                    workshop.getTitle(),
-                    workshop.getStartTime().format(DATE_TIME_FORMATTER),
-                    workshop.getDescription(),
-                    workshop.getId()
-                );
-                
-                sendMessageToUser(chatId, message);
-                logger.info("Sent day-before reminder to user {} for workshop {}", 
-                           registration.getUser().getId(), workshop.getId());
-            }
-        }
+    private String formatDayBeforeReminder(Workshop workshop) {
+        return String.format(
+            "📅 Напоминание о мастер-классе завтра\n\n" +
+            "Напоминаем, что завтра у вас мастер-класс:\n" +
+            "📌 %s\n" +
+            "🕒 %s\n" +
+            "📝 %s\n\n" +
+            "Если у вас изменились планы, вы можете отменить запись командой:\n" +
+            "/cancel_workshop %d",
+            workshop.getTitle(),
+            workshop.getStartTime().format(DATE_TIME_FORMATTER),
+            workshop.getDescription(),
+            workshop.getId()
+        );
     }
 } 
\ No newline at end of file
@@ -5,17 +5,26 @@ import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import ru.unithack.bot.domain.enums.UserRole;
 import ru.unithack.bot.domain.model.Role;
-import ru.unithack.bot.domain.model.RoleUser;
 import ru.unithack.bot.infrastructure.repository.RoleRepository;
 
-import java.util.List;
+import java.util.LinkedHashSet;
 import java.util.Optional;
 import java.util.Set;
-import java.util.stream.Collectors;
 
+/**
+ * Роли пользователей. Роли читаются вместе с остальными данными пользователя
+ * в {@link ru.unithack.bot.domain.projection.UserSnapshot} и кешируются в {@link UserSessionCache},
+ * поэтому проверки ролей в командах к базе не обращаются.
+ */
 @Service
 public class RoleService {
 
+    /**
+     * Событие об изменении ролей пользователя, публикуется внутри транзакции
+     */
+    public record RolesChanged(Long userId) {
+    }
+
     private final RoleRepository roleRepository;
 
     @Autowired
@@ -34,20 +43,11 @@ public class RoleService {
         }
     }
 
-    @Transactional(readOnly = true)
-    public boolean hasRole(Long userId, UserRole userRole) {
-        return roleRepository.findByName(userRole.name())
-                .map(role -> role.getRoleUser().stream()
-                        .anyMatch(roleUser -> roleUser.getUser().getId().equals(userId)))
-                .orElse(false);
-    }
-    
+    /**
+     * Загружает имена ролей пользователя одним запросом
+     */
     @Transactional(readOnly = true)
     public Set<String> getUserRoles(Long userId) {
-        return roleRepository.findAll().stream()
-                .filter(role -> role.getRoleUser().stream()
-                        .anyMatch(roleUser -> roleUser.getUser().getId().equals(userId)))
-                .map(Role::getName)
-                .collect(Collectors.toSet());
+        return new LinkedHashSet<>(roleRepository.findRoleNamesByUserId(userId));
     }
-} 
\ No newline at end of file
+}
@@ -8,9 +8,15 @@ import com.pengrad.telegrambot.model.User;
 import com.pengrad.telegrambot.model.request.InlineKeyboardButton;
 import com.pengrad.telegrambot.model.request.InlineKeyboardMarkup;
 import com.pengrad.telegrambot.model.request.ParseMode;
+import com.pengrad.telegrambot.request.AnswerCallbackQuery;
+import com.pengrad.telegrambot.request.DeleteWebhook;
+import com.pengrad.telegrambot.request.EditMessageText;
 import com.pengrad.telegrambot.request.GetFile;
+import com.pengrad.telegrambot.request.GetUpdates;
 import com.pengrad.telegrambot.request.SendMessage;
 import com.pengrad.telegrambot.request.SendPhoto;
+import com.pengrad.telegrambot.request.SetWebhook;
+import com.pengrad.telegrambot.response.BaseResponse;
 import com.pengrad.telegrambot.response.GetFileResponse;
 import jakarta.annotation.PostConstruct;
 import org.slf4j.Logger;
@@ -24,16 +30,33 @@ import ru.unithack.bot.domain.model.NewsPost;
 import ru.unithack.bot.domain.model.UserInfo;
 import ru.unithack.bot.domain.model.Workshop;
 import ru.unithack.bot.domain.model.WorkshopRegistration;
+import ru.unithack.bot.domain.projection.UserDirectoryEntry;
+import ru.unithack.bot.domain.projection.UserDirectoryPage;
+import ru.unithack.bot.domain.projection.UserSnapshot;
+import ru.unithack.bot.domain.projection.UserWorkshopEntry;
+import ru.unithack.bot.domain.projection.WorkshopCatalogEntry;
 import ru.unithack.bot.infrastructure.repository.UserRepository;
+import ru.unithack.bot.infrastructure.telegram.TelegramSender;
+import ru.unithack.bot.infrastructure.telegram.UpdateDispatcher;
+import ru.unithack.bot.infrastructure.telegram.UpdatePriority;
+import ru.unithack.bot.infrastructure.telegram.UpdateRateLimiter;
+import ru.unithack.bot.infrastructure.telegram.UpdateRoute;
+import ru.unithack.bot.service.command.BotCommand;
+import ru.unithack.bot.service.command.CallbackAction;
+import ru.unithack.bot.service.command.CallbackData;
+import ru.unithack.bot.service.command.CallbackHandler;
+import ru.unithack.bot.service.command.CommandRouter;
 
 import java.io.IOException;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
-import java.util.HashMap;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiConsumer;
 
 @Service
 public class TelegramBotService {
@@ -41,150 +64,319 @@ public class TelegramBotService {
     private static final Logger logger = LoggerFactory.getLogger(TelegramBotService.class);
     private static final DateTimeFormatter DATE_FORMATTER = DateTimeFormatter.ofPattern("dd.MM.yyyy");
     private static final DateTimeFormatter TIME_FORMATTER = DateTimeFormatter.ofPattern("HH:mm");
+    private static final String BUSY_MESSAGE = "Бот сейчас перегружен, попробуйте еще раз через минуту";
+    private static final String RATE_LIMIT_MESSAGE = "Слишком много запросов, подождите несколько секунд";
     private static final DateTimeFormatter DATE_TIME_FORMATTER = DateTimeFormatter.ofPattern("dd.MM.yyyy HH:mm");
+    private static final int MY_NEWS_LIMIT = 10;
+    private static final int USERS_PAGE_SIZE = 10;
+    private static final int USERS_PAGE_NAME_LIMIT = 64;
 
-    @Value("${app.telegram-token}")
-    private String telegramToken;
-    
     @Value("${app.telegram-bot-username:your_bot}")
     private String botUsername;
 
-    private TelegramBot telegramBot;
+    @Value("${app.telegram.mode:polling}")
+    private String updatesMode;
+
+    @Value("${app.telegram.webhook.url:}")
+    private String webhookUrl;
+
+    @Value("${app.telegram.webhook.secret-token:}")
+    private String webhookSecretToken;
+
+    @Value("${app.rate-limit.expensive.commands:/workshops,/list_workshops,/my_workshops,/list_users,/users}")
+    private Set<String> expensiveCommands;
+
+    private final TelegramBot telegramBot;
     private final UserService userService;
-    private final RoleService roleService;
     private final UserRepository userRepository;
     private final QrCodeService qrCodeService;
     private final WorkshopService workshopService;
     private final NewsService newsService;
+    private final NewsDeliveryService newsDeliveryService;
+    private final ChatReachabilityService chatReachabilityService;
+    private final TelegramSender telegramSender;
+    private final UpdateDispatcher updateDispatcher;
+    private final UpdateInboxService updateInboxService;
+    private final UpdateRateLimiter updateRateLimiter;
+    private final CommandRouter commandRouter;
     
     // Map для хранения временных данных создания новостей (chatId -> NewsCreationState)
-    private final Map<Long, NewsCreationState> newsCreationStates = new HashMap<>();
+    private final Map<Long, NewsCreationState> newsCreationStates = new ConcurrentHashMap<>();
 
     @Autowired
-    public TelegramBotService(UserService userService,
-                              RoleService roleService,
+    public TelegramBotService(TelegramBot telegramBot,
+                              UserService userService,
                               UserRepository userRepository,
                               QrCodeService qrCodeService,
                               WorkshopService workshopService,
-                              NewsService newsService) {
+                              NewsService newsService,
+                              NewsDeliveryService newsDeliveryService,
+                              ChatReachabilityService chatReachabilityService,
+                              TelegramSender telegramSender,
+                              UpdateDispatcher updateDispatcher,
+                              UpdateInboxService updateInboxService,
+                              UpdateRateLimiter updateRateLimiter,
+                              CommandRouter commandRouter) {
+        this.telegramBot = telegramBot;
         this.userService = userService;
-        this.roleService = roleService;
         this.userRepository = userRepository;
         this.qrCodeService = qrCodeService;
         this.workshopService = workshopService;
         this.newsService = newsService;
+        this.newsDeliveryService = newsDeliveryService;
+        this.chatReachabilityService = chatReachabilityService;
+        this.telegramSender = telegramSender;
+        this.updateDispatcher = updateDispatcher;
+        this.updateInboxService = updateInboxService;
+        this.updateRateLimiter = updateRateLimiter;
+        this.commandRouter = commandRouter;
     }
 
     @PostConstruct
     public void init() {
-        telegramBot = new TelegramBot(telegramToken);
+        registerCommands();
+        registerCallbacks();
+        updateDispatcher.registerClassifier(this::classifyUpdate);
+        updateInboxService.registerAdmissionFilter(this::checkRateLimit);
+        updateInboxService.registerHandlers(this::rejectUpdate);
+
+        if ("webhook".equals(updatesMode)) {
+            registerWebhook();
+            return;
+        }
+
+        // getUpdates не работает, пока у бота установлен webhook
+        try {
+            telegramBot.execute(new DeleteWebhook());
+        } catch (Exception e) {
+            logger.warn("Failed to delete webhook before long polling: {}", e.getMessage());
+        }
+        // Получение подтверждается только после сохранения пакета во входящую очередь
         telegramBot.setUpdatesListener(updates -> {
             try {
-                processUpdates(updates);
+                updateInboxService.accept(updates);
             } catch (Exception e) {
-                logger.error("Error processing updates", e);
+                logger.error("Failed to store updates in the inbox, they will be requested again", e);
+                return UpdatesListener.CONFIRMED_UPDATES_NONE;
             }
             return UpdatesListener.CONFIRMED_UPDATES_ALL;
-        });
+        }, new GetUpdates().offset(updateInboxService.getNextOffset()));
     }
 
-    private void processUpdates(List<Update> updates) {
-        for (Update update : updates) {
+    /**
+     * Заполняет таблицу команд бота
+     */
+    private void registerCommands() {
+        // /start с параметром attendance_ - отметка посещения организатором, приоритет уточняется в classifyUpdate
+        commandRouter.registerCommand((message, command) -> processStartCommand(message.from(), command.args()),
+                UpdatePriority.BROWSING, "/start");
+        command(UpdatePriority.BROWSING, (chatId, args) -> processHelpCommand(chatId), "/help");
+        command(UpdatePriority.BROWSING, (chatId, args) -> processMyRolesCommand(chatId), "/my_roles");
+        command(UpdatePriority.ORGANIZER, (chatId, args) -> processListUsersCommand(chatId), "/list_users", "/users");
+        command(UpdatePriority.BROWSING, (chatId, args) -> processMyQrCommand(chatId), "/my_qr");
+        command(UpdatePriority.ORGANIZER, this::processUserQrCommand, "/user_qr");
+        command(UpdatePriority.BROWSING, (chatId, args) -> processListWorkshopsCommand(chatId), "/workshops", "/list_workshops");
+        command(UpdatePriority.BROWSING, this::processWorkshopInfoCommand, "/workshop_info");
+        command(UpdatePriority.TRANSACTIONAL, this::processRegisterWorkshopCommand, "/register_workshop");
+        command(UpdatePriority.TRANSACTIONAL, this::processCancelWorkshopCommand, "/cancel_workshop");
+        command(UpdatePriority.BROWSING, (chatId, args) -> processMyWorkshopsCommand(chatId), "/my_workshops");
+        command(UpdatePriority.ORGANIZER, this::processCreateWorkshopCommand, "/create_workshop");
+        command(UpdatePriority.ORGANIZER, this::processEditWorkshopCommand, "/edit_workshop");
+        command(UpdatePriority.ORGANIZER, this::processDeleteWorkshopCommand, "/delete_workshop");
+        command(UpdatePriority.ORGANIZER, this::processWorkshopParticipantsCommand, "/workshop_participants");
+        command(UpdatePriority.ORGANIZER, this::processAddParticipantCommand, "/add_participant");
+        command(UpdatePriority.ORGANIZER, this::processRemoveParticipantCommand, "/remove_participant");
+        command(UpdatePriority.TRANSACTIONAL, this::processConfirmWorkshopCommand, "/confirm_workshop");
+        command(UpdatePriority.ORGANIZER, this::processScanQrCommand, "/scan_qr");
+        command(UpdatePriority.ORGANIZER, this::processAddOrganizerCommand, "/add_organizer");
+        command(UpdatePriority.ORGANIZER, this::processRemoveOrganizerCommand, "/remove_organizer");
+        command(UpdatePriority.ORGANIZER, this::processWorkshopAttendanceCommand, "/workshop_attendance");
+        command(UpdatePriority.ORGANIZER, (chatId, args) -> processCreateNewsCommand(chatId), "/create_news");
+        command(UpdatePriority.ORGANIZER, (chatId, args) -> processCreateWorkshopNewsCommand(chatId), "/create_workshop_news");
+        command(UpdatePriority.ORGANIZER, (chatId, args) -> processMyNewsCommand(chatId), "/my_news");
+    }
+
+    private void command(UpdatePriority priority, BiConsumer<Long, String> handler, String name, String... aliases) {
+        commandRouter.registerCommand((message, command) -> handler.accept(message.from().id(), command.args()),
+                priority, name, aliases);
+    }
+
+    /**
+     * Заполняет таблицу колбэков inline-кнопок
+     */
+    private void registerCallbacks() {
+        // Аргументы: workshop_id, user_id, status
+        callback(CallbackAction.MARK_ATTENDANCE, UpdatePriority.ORGANIZER, 3, "Ошибка при обработке запроса на отметку посещения",
+                (chatId, messageId, data) -> markAttendanceFromCallback(chatId, data.arg(0), data.arg(1), data.flag(2)));
+        callback(CallbackAction.SELECT_WORKSHOP_FOR_NEWS, UpdatePriority.ORGANIZER, 1, "Ошибка при выборе мастер-класса для новости",
+                (chatId, messageId, data) -> selectWorkshopForNews(chatId, data.arg(0)));
+        callback(CallbackAction.REGISTER_WORKSHOP, UpdatePriority.TRANSACTIONAL, 1, "Ошибка при обработке запроса на запись на мастер-класс",
+                (chatId, messageId, data) -> registerWorkshopFromCallback(chatId, data.arg(0)));
+        callback(CallbackAction.CANCEL_WORKSHOP, UpdatePriority.TRANSACTIONAL, 1, "Ошибка при обработке запроса на отмену записи на мастер-класс",
+                (chatId, messageId, data) -> cancelWorkshopFromCallback(chatId, data.arg(0)));
+        callback(CallbackAction.CONFIRM_WORKSHOP, UpdatePriority.TRANSACTIONAL, 1, "Ошибка при обработке запроса на подтверждение записи на мастер-класс",
+                (chatId, messageId, data) -> confirmWorkshopFromCallback(chatId, data.arg(0)));
+        // Аргументы: граница страницы (user_id), направление
+        callback(CallbackAction.USERS_PAGE, UpdatePriority.ORGANIZER, 2, "Ошибка при загрузке списка пользователей",
+                (chatId, messageId, data) -> showUsersPage(chatId, messageId, data.arg(0), data.flag(1)));
+    }
+
+    private void callback(CallbackAction action, UpdatePriority priority, int requiredArgs, String errorMessage,
+                          CallbackHandler handler) {
+        commandRouter.registerCallback(action, priority, (chatId, messageId, data) -> {
+            if (data.argCount() < requiredArgs) {
+                return;
+            }
             try {
-                if (update.message() != null && update.message().text() != null) {
-                    processMessage(update.message());
-                } else if (update.callbackQuery() != null) {
-                    processCallbackQuery(update);
-                }
-            } catch (Exception e) {
-                logger.error("Error processing update", e);
+                handler.handle(chatId, messageId, data);
+            } catch (RuntimeException e) {
+                sendMessage(chatId, errorMessage);
+                throw e;
             }
+        });
+    }
+
+    /**
+     * Регистрирует webhook в Telegram. Если публичный адрес не задан,
+     * считаем, что webhook уже настроен снаружи (например, при деплое за балансировщиком).
+     */
+    private void registerWebhook() {
+        if (webhookUrl == null || webhookUrl.isBlank()) {
+            logger.info("Webhook mode enabled, app.telegram.webhook.url is not set - skipping setWebhook");
+            return;
+        }
+
+        BaseResponse response = telegramBot.execute(new SetWebhook()
+                .url(webhookUrl)
+                .secretToken(webhookSecretToken));
+        if (response.isOk()) {
+            logger.info("Webhook registered at {}", webhookUrl);
+        } else {
+            logger.error("Failed to register webhook at {}: {}", webhookUrl, response.description());
         }
     }
 
     /**
-     * Обрабатывает нажатия на inline-кнопки
+     * Обрабатывает одно обновление. Вызывается диспетчером, обновления одного чата приходят по порядку
+     * @param callbackData данные колбэка, декодированные при классификации
      */
-    private void processCallbackQuery(Update update) {
-        String callbackData = update.callbackQuery().data();
-        Long chatId = update.callbackQuery().from().id();
-        
-        logger.info("Received callback: {} from chatId: {}", callbackData, chatId);
-        
-        if (callbackData.startsWith("mark_attendance:")) {
-            // Формат: mark_attendance:workshop_id:user_id:status
-            String[] parts = callbackData.split(":");
-            if (parts.length >= 4) {
-                try {
-                    Long workshopId = Long.parseLong(parts[1]);
-                    Long userId = Long.parseLong(parts[2]);
-                    boolean status = Boolean.parseBoolean(parts[3]);
-                    
-                    markAttendanceFromCallback(chatId, workshopId, userId, status);
-                } catch (Exception e) {
-                    logger.error("Error processing mark_attendance callback", e);
-                    sendMessage(chatId, "Ошибка при обработке запроса на отметку посещения");
-                }
-            }
-        } else if (callbackData.startsWith("select_workshop_for_news:")) {
-            // Формат: select_workshop_for_news:workshop_id
-            String[] parts = callbackData.split(":");
-            if (parts.length >= 2) {
-                try {
-                    Long workshopId = Long.parseLong(parts[1]);
-                    selectWorkshopForNews(chatId, workshopId);
-                } catch (Exception e) {
-                    logger.error("Error processing select_workshop_for_news callback", e);
-                    sendMessage(chatId, "Ошибка при выборе мастер-класса для новости");
-                }
-            }
-        } else if (callbackData.startsWith("register_workshop:")) {
-            // Формат: register_workshop:workshop_id
-            String[] parts = callbackData.split(":");
-            if (parts.length >= 2) {
-                try {
-                    Long workshopId = Long.parseLong(parts[1]);
-                    registerWorkshopFromCallback(chatId, workshopId);
-                } catch (Exception e) {
-                    logger.error("Error processing register_workshop callback", e);
-                    sendMessage(chatId, "Ошибка при обработке запроса на запись на мастер-класс");
-                }
+    private void processUpdate(Update update, CallbackData callbackData) {
+        if (update.message() != null) {
+            if (update.message().chat() != null) {
+                chatReachabilityService.onInboundUpdate(update.message().chat().id());
             }
-        } else if (callbackData.startsWith("cancel_workshop:")) {
-            // Формат: cancel_workshop:workshop_id
-            String[] parts = callbackData.split(":");
-            if (parts.length >= 2) {
-                try {
-                    Long workshopId = Long.parseLong(parts[1]);
-                    cancelWorkshopFromCallback(chatId, workshopId);
-                } catch (Exception e) {
-                    logger.error("Error processing cancel_workshop callback", e);
-                    sendMessage(chatId, "Ошибка при обработке запроса на отмену записи на мастер-класс");
-                }
+            processMessage(update.message());
+        } else if (update.callbackQuery() != null) {
+            chatReachabilityService.onInboundUpdate(update.callbackQuery().from().id());
+            processCallbackQuery(update, callbackData);
+        } else if (update.myChatMember() != null) {
+            chatReachabilityService.onMyChatMember(update.myChatMember());
+        }
+    }
+
+    /**
+     * Определяет приоритет и обработку обновления по команде или колбэку, без обращения к базе данных.
+     * Данные колбэка декодируются здесь и передаются обработчику
+     */
+    private UpdateRoute classifyUpdate(Update update) {
+        if (update.callbackQuery() != null) {
+            CallbackData callbackData = CallbackData.parse(update.callbackQuery().data());
+            return new UpdateRoute(commandRouter.callbackPriority(callbackData), () -> processUpdate(update, callbackData));
+        }
+        return new UpdateRoute(messagePriority(update.message()), () -> processUpdate(update, null));
+    }
+
+    private UpdatePriority messagePriority(Message message) {
+        if (message == null) {
+            return UpdatePriority.BROWSING;
+        }
+        // Шаги создания новости приходят обычным текстом или фотографией
+        if (message.from() != null && newsCreationStates.containsKey(message.from().id())) {
+            return UpdatePriority.ORGANIZER;
+        }
+        if (message.text() == null) {
+            return UpdatePriority.BROWSING;
+        }
+
+        BotCommand command = BotCommand.parse(message.text());
+        if ("/start".equals(command.name()) && command.args().startsWith("attendance_")) {
+            return UpdatePriority.ORGANIZER;
+        }
+        return commandRouter.commandPriority(command.name());
+    }
+
+    /**
+     * Проверяет лимит частоты запросов. Вызывается входящей очередью до сохранения обновления,
+     * поэтому к базе данных не обращается. Действия организаторов и изменения данных
+     * не отбрасываются при перегрузке, но расходуют свой, более емкий лимит чата
+     * @param priority приоритет, определенный при классификации
+     * @return false, если обновление нужно отбросить
+     */
+    private boolean checkRateLimit(Update update, UpdatePriority priority) {
+        long chatId;
+        boolean expensive = false;
+        if (update.message() != null && update.message().chat() != null) {
+            chatId = update.message().chat().id();
+            if (update.message().text() != null) {
+                expensive = expensiveCommands.contains(BotCommand.parse(update.message().text()).name());
             }
-        } else if (callbackData.startsWith("confirm_workshop:")) {
-            // Формат: confirm_workshop:workshop_id
-            String[] parts = callbackData.split(":");
-            if (parts.length >= 2) {
-                try {
-                    Long workshopId = Long.parseLong(parts[1]);
-                    confirmWorkshopFromCallback(chatId, workshopId);
-                } catch (Exception e) {
-                    logger.error("Error processing confirm_workshop callback", e);
-                    sendMessage(chatId, "Ошибка при обработке запроса на подтверждение записи на мастер-класс");
-                }
+        } else if (update.callbackQuery() != null && update.callbackQuery().from() != null) {
+            chatId = update.callbackQuery().from().id();
+        } else {
+            return true;
+        }
+
+        UpdateRateLimiter.Result result = updateRateLimiter.tryAcquire(chatId, expensive, !priority.isSheddable());
+        if (result == UpdateRateLimiter.Result.ALLOWED) {
+            return true;
+        }
+
+        logger.debug("Rate limit exceeded for chatId: {}", chatId);
+        if (result == UpdateRateLimiter.Result.REJECTED_NOTIFY) {
+            if (update.callbackQuery() != null) {
+                telegramSender.execute(new AnswerCallbackQuery(update.callbackQuery().id()).text(RATE_LIMIT_MESSAGE));
+            } else {
+                sendMessage(chatId, RATE_LIMIT_MESSAGE);
             }
         }
+        return false;
     }
-    
+
+    /**
+     * Быстрый ответ на обновление, не принятое из-за перегрузки
+     */
+    private void rejectUpdate(Update update) {
+        if (update.callbackQuery() != null) {
+            telegramSender.execute(new AnswerCallbackQuery(update.callbackQuery().id()).text(BUSY_MESSAGE));
+        } else if (update.message() != null && update.message().chat() != null) {
+            sendMessage(update.message().chat().id(), BUSY_MESSAGE);
+        }
+    }
+
+    /**
+     * Обрабатывает нажатия на inline-кнопки
+     */
+    private void processCallbackQuery(Update update, CallbackData callbackData) {
+        String data = update.callbackQuery().data();
+        Long chatId = update.callbackQuery().from().id();
+        Integer messageId = update.callbackQuery().maybeInaccessibleMessage() != null
+                ? update.callbackQuery().maybeInaccessibleMessage().messageId() : null;
+        
+        logger.info("Received callback: {} from chatId: {}", data, chatId);
+
+        if (!commandRouter.dispatchCallback(chatId, messageId, callbackData)) {
+            logger.warn("Unknown callback: {} from chatId: {}", data, chatId);
+        }
+    }
+
     /**
      * Обрабатывает отметку посещения из колбэка кнопки
      */
     private void markAttendanceFromCallback(Long organizerChatId, Long workshopId, Long userId, boolean status) {
-        userService.findUserByChatId(organizerChatId).ifPresentOrElse(
+        userService.findSnapshotByChatId(organizerChatId).ifPresentOrElse(
                 organizer -> {
-                    if (!(userService.hasRole(organizer.getId(), UserRole.ORGANIZER) ||
-                            userService.hasRole(organizer.getId(), UserRole.ADMIN))) {
+                    if (!(organizer.hasRole(UserRole.ORGANIZER) ||
+                            organizer.hasRole(UserRole.ADMIN))) {
                         sendMessage(organizerChatId, "У вас нет прав на выполнение этой команды");
                         return;
                     }
@@ -195,7 +387,7 @@ public class TelegramBotService {
                             workshop -> {
                                 userService.findUserById(userId).ifPresentOrElse(
                                         participant -> {
-                                            boolean success = workshopService.markAttendance(workshop, participant, status, organizer.getId());
+                                            boolean success = workshopService.markAttendance(workshop, participant, status, organizer.id());
                                             if (success) {
                                                 String statusMsg = status ? "✅ отмечен как присутствующий" : "❌ отмечен как отсутствующий";
                                                 sendMessage(organizerChatId, String.format("Участник %s %s на мастер-классе \"%s\"",
@@ -345,9 +537,7 @@ public class TelegramBotService {
         User telegramUser = message.from();
         Long chatId = telegramUser.id();
         String username = telegramUser.username();
-        String firstName = telegramUser.firstName() != null ? telegramUser.firstName() : "";
-        String lastName = telegramUser.lastName() != null ? telegramUser.lastName() : "";
-        String fullName = (firstName + " " + lastName).trim();
+        String fullName = getFullName(telegramUser);
 
         // Обработка состояния создания новости
         if (newsCreationStates.containsKey(chatId)) {
@@ -355,60 +545,11 @@ public class TelegramBotService {
             return;
         }
 
-        updateUserInfoIfChanged(chatId, fullName, username);
+        userService.updateProfileIfChanged(chatId, fullName, username);
         
         // Обработка команд
-        if (text.startsWith("/start")) {
-            processStartCommand(telegramUser, chatId, fullName, username, text);
-        } else if (text.equals("/help")) {
-            processHelpCommand(chatId);
-        } else if (text.equals("/my_roles")) {
-            processMyRolesCommand(chatId);
-        } else if (text.equals("/list_users") || text.equals("/users")) {
-            processListUsersCommand(chatId);
-        } else if (text.equals("/my_qr")) {
-            processMyQrCommand(chatId);
-        } else if (text.startsWith("/user_qr ")) {
-            processUserQrCommand(chatId, text);
-        } else if (text.equals("/workshops") || text.equals("/list_workshops")) {
-            processListWorkshopsCommand(chatId);
-        } else if (text.startsWith("/workshop_info ")) {
-            processWorkshopInfoCommand(chatId, text);
-        } else if (text.startsWith("/register_workshop ")) {
-            processRegisterWorkshopCommand(chatId, text);
-        } else if (text.startsWith("/cancel_workshop ")) {
-            processCancelWorkshopCommand(chatId, text);
-        } else if (text.equals("/my_workshops")) {
-            processMyWorkshopsCommand(chatId);
-        } else if (text.startsWith("/create_workshop ")) {
-            processCreateWorkshopCommand(chatId, text);
-        } else if (text.startsWith("/edit_workshop ")) {
-            processEditWorkshopCommand(chatId, text);
-        } else if (text.startsWith("/delete_workshop ")) {
-            processDeleteWorkshopCommand(chatId, text);
-        } else if (text.startsWith("/workshop_participants ")) {
-            processWorkshopParticipantsCommand(chatId, text);
-        } else if (text.startsWith("/add_participant ")) {
-            processAddParticipantCommand(chatId, text);
-        } else if (text.startsWith("/remove_participant ")) {
-            processRemoveParticipantCommand(chatId, text);
-        } else if (text.startsWith("/confirm_workshop ")) {
-            processConfirmWorkshopCommand(chatId, text);
-        } else if (text.startsWith("/scan_qr ")) {
-            processScanQrCommand(chatId, text);
-        } else if (text.startsWith("/add_organizer ")) {
-            processAddOrganizerCommand(chatId, text);
-        } else if (text.startsWith("/remove_organizer ")) {
-            processRemoveOrganizerCommand(chatId, text);
-        } else if (text.startsWith("/workshop_attendance ")) {
-            processWorkshopAttendanceCommand(chatId, text);
-        } else if (text.equals("/create_news")) {
-            processCreateNewsCommand(chatId);
-        } else if (text.equals("/create_workshop_news")) {
-            processCreateWorkshopNewsCommand(chatId);
-        } else if (text.equals("/my_news")) {
-            processMyNewsCommand(chatId);
-        } else {
+        BotCommand command = BotCommand.parse(text);
+        if (!commandRouter.dispatchCommand(message, command)) {
             sendMessage(chatId, "Неизвестная команда. Введите /help для списка доступных команд.");
         }
     }
@@ -445,8 +586,10 @@ public class TelegramBotService {
             com.pengrad.telegrambot.model.PhotoSize[] photoSizes = message.photo();
             com.pengrad.telegrambot.model.PhotoSize largestPhoto = photoSizes[photoSizes.length - 1];
             
-            // Получаем file_id наибольшего фото
+            // Получаем file_id наибольшего фото. Он же используется при рассылке,
+            // поэтому повторно загружать изображение в Telegram не нужно
             String fileId = largestPhoto.fileId();
+            state.setImageFileId(fileId);
             
             // Получаем информацию о файле из Telegram
             GetFileResponse fileResponse = telegramBot.execute(new GetFile(fileId));
@@ -459,14 +602,11 @@ public class TelegramBotService {
             com.pengrad.telegrambot.model.File file = fileResponse.file();
             String filePath = file.filePath();
             
-            // Формируем URL для скачивания
-            String fileUrl = "https://api.telegram.org/file/bot" + telegramToken + "/" + filePath;
-            
             // Отправляем сообщение о том, что изображение обрабатывается
             sendMessage(chatId, "Изображение получено, обрабатываю...");
             
-            // Скачиваем файл - это должно быть реализовано в отдельном методе
-            byte[] imageData = downloadFileFromUrl(fileUrl);
+            // Скачиваем файл через общий HTTP-клиент бота
+            byte[] imageData = telegramBot.getFileContent(file);
             
             // Сохраняем изображение
             String savedImagePath;
@@ -489,15 +629,6 @@ public class TelegramBotService {
         }
     }
     
-    /**
-     * Скачивает файл по URL
-     */
-    private byte[] downloadFileFromUrl(String fileUrl) throws IOException {
-        java.net.URL url = new java.net.URL(fileUrl);
-        try (java.io.InputStream in = url.openStream()) {
-            return in.readAllBytes();
-        }
-    }
 
     /**
      * Обрабатывает состояние создания новости
@@ -562,38 +693,21 @@ public class TelegramBotService {
         WORKSHOP
     }
 
-    private void updateUserInfoIfChanged(Long chatId, String currentName, String username) {
-        userService.findUserByChatId(chatId).ifPresent(user -> {
-            UserInfo userInfo = user.getUserInfo();
-            if (userInfo != null) {
-                boolean changed = false;
-
-                if (!currentName.equals(userInfo.getName())) {
-                    logger.info("Updating user name from '{}' to '{}' for chatId {}",
-                            userInfo.getName(), currentName, chatId);
-                    userInfo.setName(currentName);
-                    changed = true;
-                }
-
-                if (username != null && !username.equals(userInfo.getUsername())) {
-                    logger.info("Updating username from '{}' to '{}' for chatId {}",
-                            userInfo.getUsername(), username, chatId);
-                    userInfo.setUsername(username);
-                    changed = true;
-                }
-
-                if (changed) {
-                    userRepository.save(user);
-                }
-            }
-        });
+    private static String getFullName(User telegramUser) {
+        String firstName = telegramUser.firstName() != null ? telegramUser.firstName() : "";
+        String lastName = telegramUser.lastName() != null ? telegramUser.lastName() : "";
+        return (firstName + " " + lastName).trim();
     }
 
-    private void processStartCommand(User telegramUser, Long chatId, String fullName, String username, String text) {
+    private void processStartCommand(User telegramUser, String args) {
+        Long chatId = telegramUser.id();
+        String username = telegramUser.username();
+        String fullName = getFullName(telegramUser);
+
         // Проверяем наличие параметра attendance в команде /start
-        if (text != null && text.startsWith("/start attendance_")) {
+        if (args.startsWith("attendance_")) {
             // Обрабатываем QR-код для отметки посещения
-            processAttendanceQrScan(chatId, text);
+            processAttendanceQrScan(chatId, args);
             return;
         }
         
@@ -615,18 +729,18 @@ public class TelegramBotService {
     /**
      * Обрабатывает QR-код для отметки посещения
      */
-    private void processAttendanceQrScan(Long organizerChatId, String startCommand) {
-        userService.findUserByChatId(organizerChatId).ifPresentOrElse(
+    private void processAttendanceQrScan(Long organizerChatId, String startParam) {
+        userService.findSnapshotByChatId(organizerChatId).ifPresentOrElse(
                 organizer -> {
-                    if (!(userService.hasRole(organizer.getId(), UserRole.ORGANIZER) ||
-                            userService.hasRole(organizer.getId(), UserRole.ADMIN))) {
+                    if (!(organizer.hasRole(UserRole.ORGANIZER) ||
+                            organizer.hasRole(UserRole.ADMIN))) {
                         sendMessage(organizerChatId, "У вас нет прав на выполнение этой команды. Требуется роль организатора или администратора.");
                         return;
                     }
                     
                     try {
                         // Извлекаем ID пользователя из параметра
-                        String param = startCommand.substring("/start attendance_".length()).trim();
+                        String param = startParam.substring("attendance_".length()).trim();
                         Long userId = Long.parseLong(param);
                         
                         // Находим пользователя по ID
@@ -686,7 +800,7 @@ public class TelegramBotService {
                                             Workshop workshop = registrations.get(i).getWorkshop();
                                             // Используем true в качестве стандартного статуса
                                             buttons[i] = new InlineKeyboardButton("Отметить - " + workshop.getTitle())
-                                                    .callbackData("mark_attendance:" + workshop.getId() + ":" + userId + ":true");
+                                                    .callbackData(CallbackData.encode(CallbackAction.MARK_ATTENDANCE, workshop.getId(), userId, 1));
                                         }
                                         
                                         // Добавляем по одной кнопке в ряду
@@ -698,7 +812,7 @@ public class TelegramBotService {
                                         message.replyMarkup(keyboardMarkup);
                                         
                                         // Отправляем сообщение с клавиатурой
-                                        telegramBot.execute(message);
+                                        telegramSender.send(organizerChatId, message);
                                     } else {
                                         sendMessage(organizerChatId, "Пользователь найден, но информация о нем отсутствует.");
                                     }
@@ -714,14 +828,13 @@ public class TelegramBotService {
         );
     }
 
-    private void processAddOrganizerCommand(Long chatId, String text) {
-        userService.findUserByChatId(chatId).ifPresentOrElse(
+    private void processAddOrganizerCommand(Long chatId, String args) {
+        userService.findSnapshotByChatId(chatId).ifPresentOrElse(
                 user -> {
-                    if (userService.hasRole(user.getId(), UserRole.ADMIN)) {
-                        String[] parts = text.split(" ", 2);
-                        if (parts.length > 1 && !parts[1].trim().isEmpty()) {
+                    if (user.hasRole(UserRole.ADMIN)) {
+                        if (!args.isEmpty()) {
                             try {
-                                Long organizerChatId = Long.parseLong(parts[1].trim());
+                                Long organizerChatId = Long.parseLong(args);
 
                                 boolean success = userService.addRoleToUserByChatId(organizerChatId, UserRole.ORGANIZER);
                                 if (success) {
@@ -747,14 +860,13 @@ public class TelegramBotService {
         );
     }
 
-    private void processRemoveOrganizerCommand(Long chatId, String text) {
-        userService.findUserByChatId(chatId).ifPresentOrElse(
+    private void processRemoveOrganizerCommand(Long chatId, String args) {
+        userService.findSnapshotByChatId(chatId).ifPresentOrElse(
                 user -> {
-                    if (userService.hasRole(user.getId(), UserRole.ADMIN)) {
-                        String[] parts = text.split(" ", 2);
-                        if (parts.length > 1 && !parts[1].trim().isEmpty()) {
+                    if (user.hasRole(UserRole.ADMIN)) {
+                        if (!args.isEmpty()) {
                             try {
-                                Long organizerChatId = Long.parseLong(parts[1].trim());
+                                Long organizerChatId = Long.parseLong(args);
 
                                 boolean success = userService.removeRoleFromUserByChatId(organizerChatId, UserRole.ORGANIZER);
                                 if (success) {
@@ -782,9 +894,9 @@ public class TelegramBotService {
 
     @Transactional
     protected void processMyRolesCommand(Long chatId) {
-        userService.findUserByChatId(chatId).ifPresentOrElse(
+        userService.findSnapshotByChatId(chatId).ifPresentOrElse(
                 user -> {
-                    Set<String> roles = roleService.getUserRoles(user.getId());
+                    Set<String> roles = user.roles();
                     if (roles.isEmpty()) {
                         sendMessage(chatId, "У вас нет ролей в системе.");
                     } else {
@@ -795,41 +907,71 @@ public class TelegramBotService {
         );
     }
 
-    @Transactional
     protected void processListUsersCommand(Long chatId) {
-        userService.findUserByChatId(chatId).ifPresentOrElse(
-                user -> {
-                    if (userService.hasRole(user.getId(), UserRole.ADMIN)) {
-                        List<ru.unithack.bot.domain.model.User> users = userService.getAllUsers();
+        showUsersPage(chatId, null, 0, true);
+    }
 
-                        if (users.isEmpty()) {
-                            sendMessage(chatId, "В системе нет зарегистрированных пользователей.");
-                        } else {
-                            StringBuilder messageBuilder = new StringBuilder("Список пользователей:\n\n");
-
-                            for (ru.unithack.bot.domain.model.User u : users) {
-                                UserInfo info = u.getUserInfo();
-                                if (info != null) {
-                                    Set<String> roles = roleService.getUserRoles(u.getId());
-                                    String roleStr = roles.isEmpty() ? "Нет ролей" : String.join(", ", roles);
-                                    String usernameStr = info.getUsername() != null ? "@" + info.getUsername() : "Не указан";
-
-                                    messageBuilder.append(String.format("Имя: %s\nUsername: %s\nID чата: %s\nРоли: %s\n\n",
-                                            info.getName(),
-                                            usernameStr,
-                                            info.getChatId() != null ? info.getChatId() : "Не указан",
-                                            roleStr));
-                                }
-                            }
+    /**
+     * Показывает страницу списка пользователей. Страницы выбираются по user_id, а не по смещению,
+     * поэтому стоимость запроса не зависит от номера страницы. При листании кнопками
+     * редактируется то же сообщение
+     * @param messageId сообщение для редактирования, null - отправить новое
+     */
+    private void showUsersPage(Long chatId, Integer messageId, long anchorUserId, boolean forward) {
+        UserSnapshot user = userService.findSnapshotByChatId(chatId).orElse(null);
+        if (user == null) {
+            sendMessage(chatId, "Вы не зарегистрированы. Используйте /start для регистрации.");
+            return;
+        }
+        if (!user.hasRole(UserRole.ADMIN)) {
+            sendMessage(chatId, "У вас нет прав на выполнение этой команды. Требуется роль администратора.");
+            return;
+        }
 
-                            sendMessage(chatId, messageBuilder.toString());
-                        }
-                    } else {
-                        sendMessage(chatId, "У вас нет прав на выполнение этой команды. Требуется роль администратора.");
-                    }
-                },
-                () -> sendMessage(chatId, "Вы не зарегистрированы. Используйте /start для регистрации.")
-        );
+        UserDirectoryPage page = userService.getUserDirectoryPage(anchorUserId, forward, USERS_PAGE_SIZE);
+        if (page.entries().isEmpty()) {
+            if (messageId == null) {
+                sendMessage(chatId, "В системе нет зарегистрированных пользователей.");
+            }
+            return;
+        }
+
+        StringBuilder messageBuilder = new StringBuilder("Список пользователей:\n\n");
+        for (UserDirectoryEntry entry : page.entries()) {
+            String roleStr = entry.roles() == null || entry.roles().isEmpty() ? "Нет ролей" : entry.roles();
+            String usernameStr = entry.username() != null ? "@" + entry.username() : "Не указан";
+
+            messageBuilder.append(String.format("Имя: %s\nUsername: %s\nID чата: %s\nРоли: %s\n\n",
+                    abbreviate(entry.name(), USERS_PAGE_NAME_LIMIT),
+                    usernameStr,
+                    entry.chatId() != null ? entry.chatId() : "Не указан",
+                    roleStr));
+        }
+
+        List<InlineKeyboardButton> navigation = new ArrayList<>();
+        if (page.hasPrevious()) {
+            navigation.add(new InlineKeyboardButton("⬅️ Назад")
+                    .callbackData(CallbackData.encode(CallbackAction.USERS_PAGE, page.firstUserId(), 0)));
+        }
+        if (page.hasNext()) {
+            navigation.add(new InlineKeyboardButton("Вперед ➡️")
+                    .callbackData(CallbackData.encode(CallbackAction.USERS_PAGE, page.lastUserId(), 1)));
+        }
+        InlineKeyboardMarkup keyboardMarkup = new InlineKeyboardMarkup(navigation.toArray(new InlineKeyboardButton[0]));
+
+        if (messageId != null) {
+            telegramSender.send(chatId, new EditMessageText(chatId, messageId, messageBuilder.toString())
+                    .replyMarkup(keyboardMarkup));
+        } else {
+            telegramSender.send(chatId, new SendMessage(chatId, messageBuilder.toString()).replyMarkup(keyboardMarkup));
+        }
+    }
+
+    private static String abbreviate(String text, int maxLength) {
+        if (text == null || text.length() <= maxLength) {
+            return text;
+        }
+        return text.substring(0, maxLength - 1) + "…";
     }
 
     @Transactional
@@ -854,16 +996,15 @@ public class TelegramBotService {
     }
 
     @Transactional
-    protected void processUserQrCommand(Long chatId, String text) {
-        userService.findUserByChatId(chatId).ifPresentOrElse(
+    protected void processUserQrCommand(Long chatId, String args) {
+        userService.findSnapshotByChatId(chatId).ifPresentOrElse(
                 currentUser -> {
-                    if (userService.hasRole(currentUser.getId(), UserRole.ADMIN) ||
-                            userService.hasRole(currentUser.getId(), UserRole.ORGANIZER)) {
+                    if (currentUser.hasRole(UserRole.ADMIN) ||
+                            currentUser.hasRole(UserRole.ORGANIZER)) {
 
-                        String[] parts = text.split(" ", 2);
-                        if (parts.length > 1 && !parts[1].trim().isEmpty()) {
+                        if (!args.isEmpty()) {
                             try {
-                                Long targetChatId = Long.parseLong(parts[1].trim());
+                                Long targetChatId = Long.parseLong(args);
 
                                 userService.findUserByChatId(targetChatId).ifPresentOrElse(
                                         targetUser -> {
@@ -898,49 +1039,30 @@ public class TelegramBotService {
 
     @Transactional
     protected void processListWorkshopsCommand(Long chatId) {
-        userService.findUserByChatId(chatId).ifPresentOrElse(
+        userService.findSnapshotByChatId(chatId).ifPresentOrElse(
                 user -> {
-                    List<Workshop> workshops = workshopService.getAllActiveWorkshops();
-                    if (workshops.isEmpty()) {
+                    List<WorkshopCatalogEntry> catalog = workshopService.getWorkshopCatalog(user.id());
+                    if (catalog.isEmpty()) {
                         sendMessage(chatId, "В данный момент нет доступных мастер-классов.");
                         return;
                     }
 
                     StringBuilder sb = new StringBuilder("Доступные мастер-классы:\n\n");
                     
-                    // Получаем регистрации пользователя для проверки статуса
-                    List<WorkshopRegistration> userRegistrations = workshopService.getUserRegistrations(user);
-                    
                     // Создаем клавиатуру с inline кнопками для каждого мастер-класса
                     InlineKeyboardMarkup keyboardMarkup = new InlineKeyboardMarkup();
                     
-                    for (Workshop workshop : workshops) {
-                        int registeredCount = workshopService.getWorkshopParticipants(workshop).size();
-                        sb.append(workshopService.formatWorkshopListItemSafe(workshop, registeredCount)).append("\n\n");
-                        
-                        // Проверяем статус регистрации пользователя на этот мастер-класс
-                        boolean isRegistered = false;
-                        boolean isInWaitlist = false;
-                        
-                        for (WorkshopRegistration reg : userRegistrations) {
-                            if (reg.getWorkshop().getId().equals(workshop.getId())) {
-                                if (reg.isWaitlist()) {
-                                    isInWaitlist = true;
-                                } else {
-                                    isRegistered = true;
-                                }
-                                break;
-                            }
-                        }
+                    for (WorkshopCatalogEntry entry : catalog) {
+                        sb.append(workshopService.formatWorkshopListItem(entry)).append("\n\n");
                         
                         // Добавляем соответствующую кнопку для этого мастер-класса
                         InlineKeyboardButton button;
-                        if (isRegistered || isInWaitlist) {
-                            button = new InlineKeyboardButton("❌ Отменить - " + workshop.getTitle())
-                                    .callbackData("cancel_workshop:" + workshop.getId());
+                        if (entry.isEnrolled()) {
+                            button = new InlineKeyboardButton("❌ Отменить - " + entry.title())
+                                    .callbackData(CallbackData.encode(CallbackAction.CANCEL_WORKSHOP, entry.workshopId()));
                         } else {
-                            button = new InlineKeyboardButton("✅ Записаться - " + workshop.getTitle())
-                                    .callbackData("register_workshop:" + workshop.getId());
+                            button = new InlineKeyboardButton("✅ Записаться - " + entry.title())
+                                    .callbackData(CallbackData.encode(CallbackAction.REGISTER_WORKSHOP, entry.workshopId()));
                         }
                         
                         keyboardMarkup.addRow(button);
@@ -951,28 +1073,27 @@ public class TelegramBotService {
                     // Создаем и отправляем сообщение с кнопками
                     SendMessage message = new SendMessage(chatId, sb.toString());
                     message.replyMarkup(keyboardMarkup);
-                    telegramBot.execute(message);
+                    telegramSender.send(chatId, message);
                 },
                 () -> sendMessage(chatId, "Вы не зарегистрированы. Используйте /start для регистрации.")
         );
     }
 
     @Transactional
-    protected void processWorkshopInfoCommand(Long chatId, String text) {
+    protected void processWorkshopInfoCommand(Long chatId, String args) {
         userService.findUserByChatId(chatId).ifPresentOrElse(
                 user -> {
-                    String[] parts = text.split(" ", 2);
-                    if (parts.length < 2 || parts[1].trim().isEmpty()) {
+                    if (args.isEmpty()) {
                         sendMessage(chatId, "Пожалуйста, укажите ID мастер-класса: /workshop_info <id>");
                         return;
                     }
 
                     try {
-                        Long workshopId = Long.parseLong(parts[1].trim());
+                        Long workshopId = Long.parseLong(args);
                         workshopService.getWorkshopById(workshopId).ifPresentOrElse(
                                 workshop -> {
-                                    int registeredCount = workshopService.getWorkshopParticipants(workshop).size();
-                                    int waitlistCount = workshopService.getWorkshopWaitlist(workshop).size();
+                                    int registeredCount = workshop.getRegisteredCount();
+                                    int waitlistCount = workshop.getWaitlistCount();
                                     String info = workshopService.formatWorkshopInfoSafe(workshop, registeredCount, waitlistCount);
                                     
                                     // Проверяем статус регистрации пользователя
@@ -1004,19 +1125,19 @@ public class TelegramBotService {
                                     if (isRegistered || isInWaitlist) {
                                         // Пользователь уже зарегистрирован - показываем кнопку отмены
                                         InlineKeyboardButton cancelButton = new InlineKeyboardButton("Отменить запись")
-                                                .callbackData("cancel_workshop:" + workshop.getId());
+                                                .callbackData(CallbackData.encode(CallbackAction.CANCEL_WORKSHOP, workshop.getId()));
                                         keyboardMarkup.addRow(cancelButton);
                                         
                                         if (canConfirm) {
                                             // Пользователь в листе ожидания и может подтвердить участие
                                             InlineKeyboardButton confirmButton = new InlineKeyboardButton("Подтвердить участие")
-                                                    .callbackData("confirm_workshop:" + workshop.getId());
+                                                    .callbackData(CallbackData.encode(CallbackAction.CONFIRM_WORKSHOP, workshop.getId()));
                                             keyboardMarkup.addRow(confirmButton);
                                         }
                                     } else if (workshop.isActive()) {
                                         // Пользователь не зарегистрирован - показываем кнопку записи
                                         InlineKeyboardButton registerButton = new InlineKeyboardButton("Записаться")
-                                                .callbackData("register_workshop:" + workshop.getId());
+                                                .callbackData(CallbackData.encode(CallbackAction.REGISTER_WORKSHOP, workshop.getId()));
                                         keyboardMarkup.addRow(registerButton);
                                     }
                                     
@@ -1024,7 +1145,7 @@ public class TelegramBotService {
                                     message.replyMarkup(keyboardMarkup);
                                     
                                     // Отправляем сообщение с кнопками
-                                    telegramBot.execute(message);
+                                    telegramSender.send(chatId, message);
                                 },
                                 () -> sendMessage(chatId, "Мастер-класс с ID " + workshopId + " не найден.")
                         );
@@ -1037,17 +1158,16 @@ public class TelegramBotService {
     }
 
     @Transactional
-    protected void processRegisterWorkshopCommand(Long chatId, String text) {
+    protected void processRegisterWorkshopCommand(Long chatId, String args) {
         userService.findUserByChatId(chatId).ifPresentOrElse(
                 user -> {
-                    String[] parts = text.split(" ", 2);
-                    if (parts.length < 2 || parts[1].trim().isEmpty()) {
+                    if (args.isEmpty()) {
                         sendMessage(chatId, "Пожалуйста, укажите ID мастер-класса: /register_workshop <id>");
                         return;
                     }
 
                     try {
-                        Long workshopId = Long.parseLong(parts[1].trim());
+                        Long workshopId = Long.parseLong(args);
                         workshopService.getWorkshopById(workshopId).ifPresentOrElse(
                                 workshop -> {
                                     if (!workshop.isActive()) {
@@ -1079,17 +1199,16 @@ public class TelegramBotService {
     }
 
     @Transactional
-    protected void processCancelWorkshopCommand(Long chatId, String text) {
+    protected void processCancelWorkshopCommand(Long chatId, String args) {
         userService.findUserByChatId(chatId).ifPresentOrElse(
                 user -> {
-                    String[] parts = text.split(" ", 2);
-                    if (parts.length < 2 || parts[1].trim().isEmpty()) {
+                    if (args.isEmpty()) {
                         sendMessage(chatId, "Пожалуйста, укажите ID мастер-класса: /cancel_workshop <id>");
                         return;
                     }
 
                     try {
-                        Long workshopId = Long.parseLong(parts[1].trim());
+                        Long workshopId = Long.parseLong(args);
                         workshopService.getWorkshopById(workshopId).ifPresentOrElse(
                                 workshop -> {
                                     boolean success = workshopService.cancelRegistration(workshop, user);
@@ -1112,10 +1231,10 @@ public class TelegramBotService {
 
     @Transactional
     protected void processMyWorkshopsCommand(Long chatId) {
-        userService.findUserByChatId(chatId).ifPresentOrElse(
+        userService.findSnapshotByChatId(chatId).ifPresentOrElse(
                 user -> {
-                    List<Object[]> workshopsWithCounts = workshopService.getUserWorkshopsWithCounts(user);
-                    if (workshopsWithCounts.isEmpty()) {
+                    List<UserWorkshopEntry> entries = workshopService.getUserWorkshopEntries(user.id());
+                    if (entries.isEmpty()) {
                         sendMessage(chatId, "Вы не записаны ни на один мастер-класс.");
                         return;
                     }
@@ -1125,17 +1244,14 @@ public class TelegramBotService {
                     // Создаем клавиатуру с inline кнопками
                     InlineKeyboardMarkup keyboardMarkup = new InlineKeyboardMarkup();
                     
-                    for (Object[] data : workshopsWithCounts) {
-                        Workshop workshop = (Workshop) data[0];
-                        int registeredCount = (int) data[1];
-                        boolean isWaitlist = (boolean) data[3];
-                        Integer waitlistPosition = (Integer) data[4];
+                    for (UserWorkshopEntry entry : entries) {
+                        boolean isWaitlist = entry.waitlist();
 
-                        sb.append(workshopService.formatWorkshopListItemSafe(workshop, registeredCount));
+                        sb.append(workshopService.formatWorkshopListItem(entry));
 
                         if (isWaitlist) {
-                            if (waitlistPosition != null) {
-                                sb.append(String.format(" (в листе ожидания, позиция: %d)", waitlistPosition));
+                            if (entry.waitlistPosition() != null) {
+                                sb.append(String.format(" (в листе ожидания, позиция: %d)", entry.waitlistPosition()));
                             } else {
                                 sb.append(" (в листе ожидания)");
                             }
@@ -1144,16 +1260,16 @@ public class TelegramBotService {
                         sb.append("\n\n");
                         
                         // Добавляем кнопку отмены для каждого мастер-класса
-                        InlineKeyboardButton cancelButton = new InlineKeyboardButton("❌ Отменить - " + workshop.getTitle())
-                                .callbackData("cancel_workshop:" + workshop.getId());
+                        InlineKeyboardButton cancelButton = new InlineKeyboardButton("❌ Отменить - " + entry.title())
+                                .callbackData(CallbackData.encode(CallbackAction.CANCEL_WORKSHOP, entry.workshopId()));
                         keyboardMarkup.addRow(cancelButton);
                         
                         // Если пользователь в листе ожидания и может подтвердить участие, добавляем кнопку подтверждения
                         // Здесь предполагаем простую логику: если в листе ожидания, то может подтвердить
                         // Настоящую логику подтверждения после приглашения нужно реализовать в методе confirmWorkshopFromCallback
                         if (isWaitlist) {
-                            InlineKeyboardButton confirmButton = new InlineKeyboardButton("✅ Подтвердить - " + workshop.getTitle())
-                                    .callbackData("confirm_workshop:" + workshop.getId());
+                            InlineKeyboardButton confirmButton = new InlineKeyboardButton("✅ Подтвердить - " + entry.title())
+                                    .callbackData(CallbackData.encode(CallbackAction.CONFIRM_WORKSHOP, entry.workshopId()));
                             keyboardMarkup.addRow(confirmButton);
                         }
                     }
@@ -1161,24 +1277,24 @@ public class TelegramBotService {
                     // Создаем и отправляем сообщение с кнопками
                     SendMessage message = new SendMessage(chatId, sb.toString());
                     message.replyMarkup(keyboardMarkup);
-                    telegramBot.execute(message);
+                    telegramSender.send(chatId, message);
                 },
                 () -> sendMessage(chatId, "Вы не зарегистрированы. Используйте /start для регистрации.")
         );
     }
 
     @Transactional
-    protected void processCreateWorkshopCommand(Long chatId, String text) {
-        userService.findUserByChatId(chatId).ifPresentOrElse(
+    protected void processCreateWorkshopCommand(Long chatId, String args) {
+        userService.findSnapshotByChatId(chatId).ifPresentOrElse(
                 user -> {
-                    if (!(userService.hasRole(user.getId(), UserRole.ORGANIZER) ||
-                            userService.hasRole(user.getId(), UserRole.ADMIN))) {
+                    if (!(user.hasRole(UserRole.ORGANIZER) ||
+                            user.hasRole(UserRole.ADMIN))) {
                         sendMessage(chatId, "У вас нет прав на выполнение этой команды. Требуется роль организатора или администратора.");
                         return;
                     }
 
                     // Check if this is the initial call without parameters
-                    if (text.trim().equals("/create_workshop")) {
+                    if (args.isEmpty()) {
                         sendMessage(chatId, "Для создания мастер-класса используйте формат:\n" +
                                 "/create_workshop <название>|<описание>|<дата (дд.мм.гггг)>|<время начала (чч:мм)>|<время окончания (чч:мм)>|<количество мест>\n\n" +
                                 "Например:\n" +
@@ -1188,8 +1304,7 @@ public class TelegramBotService {
 
                     // Parse parameters
                     try {
-                        String paramString = text.substring("/create_workshop".length()).trim();
-                        String[] params = paramString.split("\\|");
+                        String[] params = args.split("\\|");
 
                         if (params.length < 6) {
                             sendMessage(chatId, "Недостаточно параметров. Используйте формат:\n" +
@@ -1255,24 +1370,23 @@ public class TelegramBotService {
     }
 
     @Transactional
-    protected void processEditWorkshopCommand(Long chatId, String text) {
-        userService.findUserByChatId(chatId).ifPresentOrElse(
+    protected void processEditWorkshopCommand(Long chatId, String args) {
+        userService.findSnapshotByChatId(chatId).ifPresentOrElse(
                 user -> {
-                    if (!(userService.hasRole(user.getId(), UserRole.ORGANIZER) ||
-                            userService.hasRole(user.getId(), UserRole.ADMIN))) {
+                    if (!(user.hasRole(UserRole.ORGANIZER) ||
+                            user.hasRole(UserRole.ADMIN))) {
                         sendMessage(chatId, "У вас нет прав на выполнение этой команды. Требуется роль организатора или администратора.");
                         return;
                     }
 
                     // Check if this is the initial call with just ID
-                    String[] mainParts = text.split(" ", 2);
-                    if (mainParts.length < 2 || mainParts[1].trim().isEmpty()) {
+                    if (args.isEmpty()) {
                         sendMessage(chatId, "Пожалуйста, укажите ID мастер-класса: /edit_workshop <id>");
                         return;
                     }
 
                     try {
-                        String idPart = mainParts[1].trim();
+                        String idPart = args;
                         Long workshopId;
 
                         // Check if we have full parameters or just ID
@@ -1297,8 +1411,8 @@ public class TelegramBotService {
                                                 workshop.isActive()
                                         );
 
-                                        int registeredCount = workshopService.getWorkshopParticipants(workshop).size();
-                                        int waitlistCount = workshopService.getWorkshopWaitlist(workshop).size();
+                                        int registeredCount = workshop.getRegisteredCount();
+                                        int waitlistCount = workshop.getWaitlistCount();
 
                                         sendMessage(chatId, "Текущая информация о мастер-классе:\n\n" +
                                                 workshopService.formatWorkshopInfoSafe(workshop, registeredCount, waitlistCount) +
@@ -1372,8 +1486,8 @@ public class TelegramBotService {
                         workshopService.updateWorkshop(workshopId, title, description, startDateTime, endDateTime, capacity, active)
                                 .ifPresentOrElse(
                                         workshop -> {
-                                            int registeredCount = workshopService.getWorkshopParticipants(workshop).size();
-                                            int waitlistCount = workshopService.getWorkshopWaitlist(workshop).size();
+                                            int registeredCount = workshop.getRegisteredCount();
+                                            int waitlistCount = workshop.getWaitlistCount();
                                             sendMessage(chatId, "Мастер-класс успешно обновлен!\n\n" +
                                                     workshopService.formatWorkshopInfoSafe(workshop, registeredCount, waitlistCount));
                                         },
@@ -1392,27 +1506,26 @@ public class TelegramBotService {
     }
 
     @Transactional
-    protected void processDeleteWorkshopCommand(Long chatId, String text) {
-        userService.findUserByChatId(chatId).ifPresentOrElse(
+    protected void processDeleteWorkshopCommand(Long chatId, String args) {
+        userService.findSnapshotByChatId(chatId).ifPresentOrElse(
                 user -> {
-                    if (!(userService.hasRole(user.getId(), UserRole.ORGANIZER) ||
-                            userService.hasRole(user.getId(), UserRole.ADMIN))) {
+                    if (!(user.hasRole(UserRole.ORGANIZER) ||
+                            user.hasRole(UserRole.ADMIN))) {
                         sendMessage(chatId, "У вас нет прав на выполнение этой команды. Требуется роль организатора или администратора.");
                         return;
                     }
 
-                    String[] parts = text.split(" ", 2);
-                    if (parts.length < 2 || parts[1].trim().isEmpty()) {
+                    if (args.isEmpty()) {
                         sendMessage(chatId, "Пожалуйста, укажите ID мастер-класса: /delete_workshop <id>");
                         return;
                     }
 
                     try {
-                        Long workshopId = Long.parseLong(parts[1].trim());
+                        Long workshopId = Long.parseLong(args);
                         workshopService.getWorkshopById(workshopId).ifPresentOrElse(
                                 workshop -> {
-                                    int registeredCount = workshopService.getWorkshopParticipants(workshop).size();
-                                    int waitlistCount = workshopService.getWorkshopWaitlist(workshop).size();
+                                    int registeredCount = workshop.getRegisteredCount();
+                                    int waitlistCount = workshop.getWaitlistCount();
                                     String workshopInfo = workshopService.formatWorkshopInfoSafe(workshop, registeredCount, waitlistCount);
                                     boolean success = workshopService.deleteWorkshop(workshopId);
                                     if (success) {
@@ -1432,23 +1545,22 @@ public class TelegramBotService {
     }
 
     @Transactional
-    protected void processWorkshopParticipantsCommand(Long chatId, String text) {
-        userService.findUserByChatId(chatId).ifPresentOrElse(
+    protected void processWorkshopParticipantsCommand(Long chatId, String args) {
+        userService.findSnapshotByChatId(chatId).ifPresentOrElse(
                 user -> {
-                    if (!(userService.hasRole(user.getId(), UserRole.ORGANIZER) ||
-                            userService.hasRole(user.getId(), UserRole.ADMIN))) {
+                    if (!(user.hasRole(UserRole.ORGANIZER) ||
+                            user.hasRole(UserRole.ADMIN))) {
                         sendMessage(chatId, "У вас нет прав на выполнение этой команды. Требуется роль организатора или администратора.");
                         return;
                     }
 
-                    String[] parts = text.split(" ", 2);
-                    if (parts.length < 2 || parts[1].trim().isEmpty()) {
+                    if (args.isEmpty()) {
                         sendMessage(chatId, "Пожалуйста, укажите ID мастер-класса: /workshop_participants <id>");
                         return;
                     }
 
                     try {
-                        Long workshopId = Long.parseLong(parts[1].trim());
+                        Long workshopId = Long.parseLong(args);
                         workshopService.getWorkshopById(workshopId).ifPresentOrElse(
                                 workshop -> {
                                     List<WorkshopRegistration> participants = workshopService.getWorkshopParticipants(workshop);
@@ -1516,17 +1628,17 @@ public class TelegramBotService {
     }
 
     @Transactional
-    protected void processAddParticipantCommand(Long chatId, String text) {
-        userService.findUserByChatId(chatId).ifPresentOrElse(
+    protected void processAddParticipantCommand(Long chatId, String args) {
+        userService.findSnapshotByChatId(chatId).ifPresentOrElse(
                 user -> {
-                    if (!(userService.hasRole(user.getId(), UserRole.ORGANIZER) ||
-                            userService.hasRole(user.getId(), UserRole.ADMIN))) {
+                    if (!(user.hasRole(UserRole.ORGANIZER) ||
+                            user.hasRole(UserRole.ADMIN))) {
                         sendMessage(chatId, "У вас нет прав на выполнение этой команды. Требуется роль организатора или администратора.");
                         return;
                     }
 
                     // Check if this is the initial call without full parameters
-                    if (text.trim().equals("/add_participant")) {
+                    if (args.isEmpty()) {
                         sendMessage(chatId, "Для добавления участника используйте формат:\n" +
                                 "/add_participant <workshop_id>|<user_chatId>|<waitlist>\n\n" +
                                 "Где:\n" +
@@ -1537,7 +1649,7 @@ public class TelegramBotService {
                     }
 
                     try {
-                        String paramString = text.substring("/add_participant".length()).trim();
+                        String paramString = args;
 
                         // If only workshop ID is provided
                         if (!paramString.contains("|")) {
@@ -1600,17 +1712,17 @@ public class TelegramBotService {
     }
 
     @Transactional
-    protected void processRemoveParticipantCommand(Long chatId, String text) {
-        userService.findUserByChatId(chatId).ifPresentOrElse(
+    protected void processRemoveParticipantCommand(Long chatId, String args) {
+        userService.findSnapshotByChatId(chatId).ifPresentOrElse(
                 user -> {
-                    if (!(userService.hasRole(user.getId(), UserRole.ORGANIZER) ||
-                            userService.hasRole(user.getId(), UserRole.ADMIN))) {
+                    if (!(user.hasRole(UserRole.ORGANIZER) ||
+                            user.hasRole(UserRole.ADMIN))) {
                         sendMessage(chatId, "У вас нет прав на выполнение этой команды. Требуется роль организатора или администратора.");
                         return;
                     }
 
                     // Check if this is the initial call without full parameters
-                    if (text.trim().equals("/remove_participant")) {
+                    if (args.isEmpty()) {
                         sendMessage(chatId, "Для удаления участника используйте формат:\n" +
                                 "/remove_participant <workshop_id>|<user_chatId>\n\n" +
                                 "Где:\n" +
@@ -1620,7 +1732,7 @@ public class TelegramBotService {
                     }
 
                     try {
-                        String paramString = text.substring("/remove_participant".length()).trim();
+                        String paramString = args;
 
                         // If only workshop ID is provided
                         if (!paramString.contains("|")) {
@@ -1679,18 +1791,17 @@ public class TelegramBotService {
     }
 
     @Transactional
-    protected void processConfirmWorkshopCommand(Long chatId, String text) {
+    protected void processConfirmWorkshopCommand(Long chatId, String args) {
         userService.findUserByChatId(chatId).ifPresentOrElse(
                 user -> {
-                    String[] parts = text.split(" ", 2);
-                    if (parts.length < 2 || parts[1].trim().isEmpty()) {
+                    if (args.isEmpty()) {
                         sendMessage(chatId, "Для подтверждения участия используйте формат:\n" +
                                 "/confirm_workshop <id>");
                         return;
                     }
 
                     try {
-                        Long workshopId = Long.parseLong(parts[1].trim());
+                        Long workshopId = Long.parseLong(args);
                         workshopService.getWorkshopById(workshopId).ifPresentOrElse(
                                 workshop -> {
                                     if (!workshop.isActive()) {
@@ -1720,17 +1831,17 @@ public class TelegramBotService {
      * Обрабатывает команду сканирования QR-кода
      */
     @Transactional
-    protected void processScanQrCommand(Long chatId, String text) {
-        userService.findUserByChatId(chatId).ifPresentOrElse(
+    protected void processScanQrCommand(Long chatId, String args) {
+        userService.findSnapshotByChatId(chatId).ifPresentOrElse(
                 user -> {
-                    if (!(userService.hasRole(user.getId(), UserRole.ORGANIZER) ||
-                            userService.hasRole(user.getId(), UserRole.ADMIN))) {
+                    if (!(user.hasRole(UserRole.ORGANIZER) ||
+                            user.hasRole(UserRole.ADMIN))) {
                         sendMessage(chatId, "У вас нет прав на выполнение этой команды. Требуется роль организатора или администратора.");
                         return;
                     }
 
                     // Проверяем, это начальная команда или уже содержит QR-код
-                    if (text.trim().equals("/scan_qr")) {
+                    if (args.isEmpty()) {
                         sendMessage(chatId, "Пожалуйста, отсканируйте QR-код участника и отправьте его содержимое.\n\n" +
                                 "Формат QR-кода: ID:USER_ID:NAME:CHAT_ID\n\n" +
                                 "После отправки содержимого QR-кода, вы получите информацию о пользователе и сможете отметить его посещение.");
@@ -1738,7 +1849,7 @@ public class TelegramBotService {
                     }
 
                     // Пробуем извлечь содержимое QR-кода
-                    String qrContent = text.substring("/scan_qr".length()).trim();
+                    String qrContent = args;
                     workshopService.findUserByQrContent(qrContent).ifPresentOrElse(
                             scannedUser -> {
                                 UserInfo userInfo = scannedUser.getUserInfo();
@@ -1807,23 +1918,22 @@ public class TelegramBotService {
      * Обрабатывает команду просмотра отчета о посещении мастер-класса
      */
     @Transactional
-    protected void processWorkshopAttendanceCommand(Long chatId, String text) {
-        userService.findUserByChatId(chatId).ifPresentOrElse(
+    protected void processWorkshopAttendanceCommand(Long chatId, String args) {
+        userService.findSnapshotByChatId(chatId).ifPresentOrElse(
                 user -> {
-                    if (!(userService.hasRole(user.getId(), UserRole.ORGANIZER) ||
-                            userService.hasRole(user.getId(), UserRole.ADMIN))) {
+                    if (!(user.hasRole(UserRole.ORGANIZER) ||
+                            user.hasRole(UserRole.ADMIN))) {
                         sendMessage(chatId, "У вас нет прав на выполнение этой команды. Требуется роль организатора или администратора.");
                         return;
                     }
 
-                    String[] parts = text.split(" ", 2);
-                    if (parts.length < 2 || parts[1].trim().isEmpty()) {
+                    if (args.isEmpty()) {
                         sendMessage(chatId, "Пожалуйста, укажите ID мастер-класса: /workshop_attendance <id>");
                         return;
                     }
 
                     try {
-                        Long workshopId = Long.parseLong(parts[1].trim());
+                        Long workshopId = Long.parseLong(args);
                         workshopService.getWorkshopById(workshopId).ifPresentOrElse(
                                 workshop -> {
                                     List<WorkshopRegistration> registrations = workshopService.getWorkshopAttendance(workshop);
@@ -1890,7 +2000,7 @@ public class TelegramBotService {
     }
 
     private void sendMessage(Long chatId, String text) {
-        telegramBot.execute(new SendMessage(chatId, text));
+        telegramSender.send(chatId, new SendMessage(chatId, text));
     }
 
     /**
@@ -1910,7 +2020,7 @@ public class TelegramBotService {
     private void sendPhoto(Long chatId, byte[] photoData, String caption) {
         SendPhoto sendPhoto = new SendPhoto(chatId, photoData)
                 .caption(caption);
-        telegramBot.execute(sendPhoto);
+        telegramSender.send(chatId, sendPhoto);
     }
 
     private void processNewsImageStep(Long chatId, NewsCreationState state) {
@@ -1945,7 +2055,7 @@ public class TelegramBotService {
         // Добавляем кнопку для каждого мастер-класса
         for (Workshop workshop : workshops) {
             InlineKeyboardButton button = new InlineKeyboardButton(workshop.getTitle())
-                    .callbackData("select_workshop_for_news:" + workshop.getId());
+                    .callbackData(CallbackData.encode(CallbackAction.SELECT_WORKSHOP_FOR_NEWS, workshop.getId()));
             keyboardMarkup.addRow(button);
         }
         
@@ -1953,7 +2063,7 @@ public class TelegramBotService {
         message.replyMarkup(keyboardMarkup);
         
         // Отправляем сообщение с кнопками
-        telegramBot.execute(message);
+        telegramSender.send(chatId, message);
         
         // Обновляем шаг создания новости
         state.setStep(NewsCreationStep.WAITING_FOR_WORKSHOP_SELECTION);
@@ -1971,14 +2081,16 @@ public class TelegramBotService {
                         state.getTitle(),
                         state.getContent(),
                         state.getImagePath(),
+                        state.getImageFileId(),
                         user
                     );
                     
-                    // Отправляем уведомления пользователям
-                    newsService.notifyAllUsersAboutGlobalNews(newsPost);
-                    
                     // Отправляем подтверждение создателю
-                    sendMessage(chatId, "✅ Глобальная новость успешно создана и разослана всем пользователям!");
+                    sendMessage(chatId, "✅ Глобальная новость успешно создана, рассылка запущена. " +
+                            "Прогресс будет отображаться в следующем сообщении.");
+                    
+                    // Запускаем рассылку пользователям
+                    newsService.notifyAllUsersAboutGlobalNews(newsPost, chatId);
                     
                     // Удаляем состояние
                     newsCreationStates.remove(chatId);
@@ -2007,6 +2119,7 @@ public class TelegramBotService {
                         state.getTitle(),
                         state.getContent(),
                         state.getImagePath(),
+                        state.getImageFileId(),
                         workshop,
                         user
                     );
@@ -2038,11 +2151,11 @@ public class TelegramBotService {
      */
     @Transactional
     protected void processCreateNewsCommand(Long chatId) {
-        userService.findUserByChatId(chatId).ifPresentOrElse(
+        userService.findSnapshotByChatId(chatId).ifPresentOrElse(
             user -> {
                 // Проверяем, имеет ли пользователь роль ADMIN или ORGANIZER
-                if (!(userService.hasRole(user.getId(), UserRole.ADMIN) || 
-                      userService.hasRole(user.getId(), UserRole.ORGANIZER))) {
+                if (!(user.hasRole(UserRole.ADMIN) || 
+                      user.hasRole(UserRole.ORGANIZER))) {
                     sendMessage(chatId, "У вас нет прав для создания новостей.");
                     return;
                 }
@@ -2065,11 +2178,11 @@ public class TelegramBotService {
      */
     @Transactional
     protected void processCreateWorkshopNewsCommand(Long chatId) {
-        userService.findUserByChatId(chatId).ifPresentOrElse(
+        userService.findSnapshotByChatId(chatId).ifPresentOrElse(
             user -> {
                 // Проверяем, имеет ли пользователь роль ADMIN или ORGANIZER
-                if (!(userService.hasRole(user.getId(), UserRole.ADMIN) || 
-                      userService.hasRole(user.getId(), UserRole.ORGANIZER))) {
+                if (!(user.hasRole(UserRole.ADMIN) || 
+                      user.hasRole(UserRole.ORGANIZER))) {
                     sendMessage(chatId, "У вас нет прав для создания новостей.");
                     return;
                 }
@@ -2101,23 +2214,13 @@ public class TelegramBotService {
                     return;
                 }
                 
-                StringBuilder message = new StringBuilder("Доступные новости:\n\n");
+                int shown = Math.min(news.size(), MY_NEWS_LIMIT);
+                sendMessage(chatId, "Последние новости (" + shown + " из " + news.size() + "):");
                 
-                for (NewsPost post : news) {
-                    message.append("📢 *").append(post.getTitle()).append("*\n");
-                    message.append(post.getContent().length() > 100 ? 
-                                  post.getContent().substring(0, 97) + "..." : post.getContent())
-                           .append("\n");
-                    
-                    if (!post.isGlobal() && post.getWorkshop() != null) {
-                        message.append("🔹 Мастер-класс: ").append(post.getWorkshop().getTitle()).append("\n");
-                    }
-                    
-                    message.append("🕒 ").append(post.getCreatedAt().format(DATE_TIME_FORMATTER))
-                           .append("\n\n");
+                // Новости отправляются полностью, с изображениями по сохраненному file_id
+                for (NewsPost post : news.subList(0, shown)) {
+                    newsDeliveryService.send(post, chatId, false);
                 }
-                
-                sendMessage(chatId, message.toString());
             },
             () -> sendMessage(chatId, "Вы не зарегистрированы в системе.")
         );
@@ -2127,7 +2230,7 @@ public class TelegramBotService {
      * Обновляет вывод помощи, добавляя команды для новостей
      */
     private void processHelpCommand(Long chatId) {
-        userService.findUserByChatId(chatId).ifPresentOrElse(
+        userService.findSnapshotByChatId(chatId).ifPresentOrElse(
             user -> {
                 StringBuilder help = new StringBuilder();
                 help.append("Доступные команды:\n\n");
@@ -2144,8 +2247,8 @@ public class TelegramBotService {
                 help.append("/my_news - Доступные новости\n\n");
                 
                 // Дополнительные команды для организаторов и администраторов
-                if (userService.hasRole(user.getId(), UserRole.ORGANIZER) || 
-                    userService.hasRole(user.getId(), UserRole.ADMIN)) {
+                if (user.hasRole(UserRole.ORGANIZER) || 
+                    user.hasRole(UserRole.ADMIN)) {
                     help.append("🔧 *Команды для организаторов:*\n");
                     help.append("/create_workshop [название]|[описание]|[дата]|[время]|[место]|[макс.участников] - Создать мастер-класс\n");
                     help.append("/edit_workshop [id]|[название]|[описание]|[дата]|[время]|[место]|[макс.участников] - Изменить мастер-класс\n");
@@ -2160,7 +2263,7 @@ public class TelegramBotService {
                 }
                 
                 // Административные команды
-                if (userService.hasRole(user.getId(), UserRole.ADMIN)) {
+                if (user.hasRole(UserRole.ADMIN)) {
                     help.append("🔑 *Административные команды:*\n");
                     help.append("/users - Список пользователей\n");
                     help.append("/user_qr [user_id] - Получить QR-код пользователя\n");
@@ -2187,6 +2290,7 @@ public class TelegramBotService {
         private String title;
         private String content;
         private String imagePath;
+        private String imageFileId;
         private Long workshopId;
         
         public NewsCreationState() {
@@ -2232,6 +2336,14 @@ public class TelegramBotService {
             this.imagePath = imagePath;
         }
         
+        public String getImageFileId() {
+            return imageFileId;
+        }
+        
+        public void setImageFileId(String imageFileId) {
+            this.imageFileId = imageFileId;
+        }
+        
         public Long getWorkshopId() {
             return workshopId;
         }
@@ -0,0 +1,297 @@
+package ru.unithack.bot.service;
+
+import com.pengrad.telegrambot.model.Update;
+import com.pengrad.telegrambot.utility.BotUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.unithack.bot.domain.enums.InboxStatus;
+import ru.unithack.bot.domain.model.InboxUpdate;
+import ru.unithack.bot.domain.model.UpdateCheckpoint;
+import ru.unithack.bot.infrastructure.repository.InboxUpdateRepository;
+import ru.unithack.bot.infrastructure.repository.UpdateCheckpointRepository;
+import ru.unithack.bot.infrastructure.telegram.UpdateDispatcher;
+import ru.unithack.bot.infrastructure.telegram.UpdatePriority;
+import ru.unithack.bot.infrastructure.telegram.UpdateRoute;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.BiPredicate;
+import java.util.function.Consumer;
+
+/**
+ * Входящая очередь обновлений. Обновление сохраняется в таблицу update_inbox до того,
+ * как Telegram получит подтверждение, и обрабатывается ровно один раз: захват записи условным
+ * update по update_id, изменения обработчика (включая уведомления в outbox) и отметка
+ * о выполнении фиксируются одной транзакцией. При падении все откатывается, и запись остается
+ * в очереди. Необработанные записи повторно передаются диспетчеру в фоновом потоке
+ * после старта приложения.
+ */
+@Service
+public class UpdateInboxService {
+
+    private static final Logger logger = LoggerFactory.getLogger(UpdateInboxService.class);
+    private static final String CHECKPOINT_NAME = "telegram";
+
+    private final InboxUpdateRepository inboxUpdateRepository;
+    private final UpdateCheckpointRepository updateCheckpointRepository;
+    private final UpdateDispatcher updateDispatcher;
+    private final TransactionTemplate transactionTemplate;
+    private final int replayBatchSize;
+    private final int retentionHours;
+    private final int claimLeaseSeconds;
+    private final Object replayLock = new Object();
+
+    private volatile BiPredicate<Update, UpdatePriority> admissionFilter = (update, priority) -> true;
+
+    /**
+     * Пока идет повтор, новые обновления только сохраняются: их передаст диспетчеру
+     * цикл повтора, чтобы внутри чата они не обогнали более ранние
+     */
+    private boolean replaying = true;
+
+    @Autowired
+    public UpdateInboxService(InboxUpdateRepository inboxUpdateRepository,
+                              UpdateCheckpointRepository updateCheckpointRepository,
+                              UpdateDispatcher updateDispatcher,
+                              TransactionTemplate transactionTemplate,
+                              @Value("${app.inbox.replay-batch-size:500}") int replayBatchSize,
+                              @Value("${app.inbox.retention-hours:48}") int retentionHours,
+                              @Value("${app.inbox.claim-lease-seconds:300}") int claimLeaseSeconds) {
+        this.inboxUpdateRepository = inboxUpdateRepository;
+        this.updateCheckpointRepository = updateCheckpointRepository;
+        this.updateDispatcher = updateDispatcher;
+        this.transactionTemplate = transactionTemplate;
+        this.replayBatchSize = replayBatchSize;
+        this.retentionHours = retentionHours;
+        this.claimLeaseSeconds = claimLeaseSeconds;
+    }
+
+    /**
+     * Подключает очередь к диспетчеру. Действие маршрута выполняется только для захваченных записей.
+     * Обновления, отклоненные диспетчером из-за перегрузки, считаются завершенными
+     * и передаются rejectionHandler, чтобы не выполняться повторно после перезапуска
+     */
+    public void registerHandlers(Consumer<Update> rejectionHandler) {
+        updateDispatcher.registerHandler((update, route) -> handle(update, route.action()));
+        updateDispatcher.registerRejectionHandler(update -> {
+            if (inboxUpdateRepository.complete(update.updateId(), InboxStatus.REJECTED, LocalDateTime.now()) > 0) {
+                rejectionHandler.accept(update);
+            }
+        });
+    }
+
+    /**
+     * Устанавливает фильтр, который вызывается до сохранения обновления, например ограничение частоты.
+     * Фильтр получает приоритет, определенный диспетчером при классификации.
+     * Отклоненные фильтром обновления не сохраняются и не обрабатываются, контрольная точка
+     * их все равно проходит. Фильтр не должен обращаться к базе данных
+     */
+    public void registerAdmissionFilter(BiPredicate<Update, UpdatePriority> admissionFilter) {
+        this.admissionFilter = admissionFilter;
+    }
+
+    /**
+     * Классифицирует пакет и пропускает его через фильтр допуска, сохраняет принятые обновления
+     * и сдвигает контрольную точку в одной транзакции, затем передает новые обновления диспетчеру
+     * вместе с их маршрутами.
+     * Уже известные update_id пропускаются.
+     * Если метод выбросил исключение, получение пакета подтверждать нельзя.
+     */
+    public void accept(List<Update> updates) {
+        if (updates.isEmpty()) {
+            return;
+        }
+
+        List<Update> admitted = new ArrayList<>(updates.size());
+        Map<Integer, UpdateRoute> routes = new HashMap<>();
+        for (Update update : updates) {
+            UpdateRoute route = updateDispatcher.classify(update);
+            if (admissionFilter.test(update, route.priority())) {
+                admitted.add(update);
+                routes.put(update.updateId(), route);
+            }
+        }
+
+        List<Update> fresh = transactionTemplate.execute(status -> store(updates, admitted));
+        synchronized (replayLock) {
+            if (replaying) {
+                return;
+            }
+        }
+        for (Update update : fresh) {
+            updateDispatcher.dispatch(update, routes.get(update.updateId()));
+        }
+    }
+
+    private List<Update> store(List<Update> updates, List<Update> admitted) {
+        int maxUpdateId = Integer.MIN_VALUE;
+        for (Update update : updates) {
+            maxUpdateId = Math.max(maxUpdateId, update.updateId());
+        }
+
+        Set<Integer> ids = new HashSet<>();
+        for (Update update : admitted) {
+            ids.add(update.updateId());
+        }
+        Set<Integer> existing = ids.isEmpty()
+                ? new HashSet<>()
+                : new HashSet<>(inboxUpdateRepository.findExistingIds(ids));
+
+        List<Update> fresh = new ArrayList<>(admitted.size());
+        List<InboxUpdate> entries = new ArrayList<>(admitted.size());
+        for (Update update : admitted) {
+            if (existing.add(update.updateId())) {
+                fresh.add(update);
+                entries.add(new InboxUpdate(update.updateId(), BotUtils.toJson(update)));
+            }
+        }
+
+        inboxUpdateRepository.saveAll(entries);
+        if (updateCheckpointRepository.advance(CHECKPOINT_NAME, maxUpdateId) == 0
+                && !updateCheckpointRepository.existsById(CHECKPOINT_NAME)) {
+            updateCheckpointRepository.save(new UpdateCheckpoint(CHECKPOINT_NAME, maxUpdateId));
+        }
+
+        if (fresh.size() < admitted.size()) {
+            logger.info("Skipped {} already received updates", admitted.size() - fresh.size());
+        }
+        return fresh;
+    }
+
+    /**
+     * Смещение, с которого нужно запрашивать обновления: все обновления до него уже сохранены
+     */
+    public int getNextOffset() {
+        return updateCheckpointRepository.findById(CHECKPOINT_NAME)
+                .map(checkpoint -> checkpoint.getLastUpdateId() + 1)
+                .orElse(0);
+    }
+
+    /**
+     * Запускает повтор необработанных обновлений, когда приложение полностью поднято
+     * и обработчики зарегистрированы. Старт приложения повтор не задерживает
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        Thread.ofVirtual().name("inbox-replay").start(() -> {
+            try {
+                replayPending();
+            } catch (Exception e) {
+                logger.error("Failed to replay pending updates", e);
+                synchronized (replayLock) {
+                    replaying = false;
+                }
+            }
+        });
+    }
+
+    /**
+     * Передает диспетчеру все необработанные обновления, оставшиеся с прошлого запуска,
+     * вместе с полученными во время повтора. Записи читаются пачками по возрастанию update_id,
+     * порядок внутри чата сохраняется.
+     */
+    private void replayPending() {
+        releaseExpiredClaims();
+
+        int replayed = 0;
+        int lastUpdateId = Integer.MIN_VALUE;
+        while (true) {
+            List<InboxUpdate> batch;
+            synchronized (replayLock) {
+                batch = inboxUpdateRepository.findByStatusAfter(
+                        InboxStatus.PENDING, lastUpdateId, PageRequest.of(0, replayBatchSize));
+                if (batch.isEmpty()) {
+                    // Дальше accept передает обновления диспетчеру сам
+                    replaying = false;
+                    break;
+                }
+            }
+
+            List<Update> updates = new ArrayList<>(batch.size());
+            for (InboxUpdate entry : batch) {
+                lastUpdateId = entry.getUpdateId();
+                try {
+                    updates.add(BotUtils.parseUpdate(entry.getPayload()));
+                } catch (Exception e) {
+                    logger.error("Cannot parse stored update {}", entry.getUpdateId(), e);
+                    inboxUpdateRepository.complete(entry.getUpdateId(), InboxStatus.FAILED, LocalDateTime.now());
+                }
+            }
+            awaitQueueCapacity();
+            updateDispatcher.dispatch(updates);
+            replayed += updates.size();
+        }
+
+        if (replayed > 0) {
+            logger.info("Replayed {} pending updates from the inbox", replayed);
+        }
+    }
+
+    /**
+     * Ждет, пока диспетчер разберет предыдущую пачку, чтобы накопившиеся обновления
+     * не вытеснялись из очереди как при перегрузке
+     */
+    private void awaitQueueCapacity() {
+        while (updateDispatcher.getQueuedUpdates() > 0) {
+            try {
+                Thread.sleep(50);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    /**
+     * Захватывает и обрабатывает обновление в одной транзакции: @Transactional-методы сервисов,
+     * вызванные обработчиком, присоединяются к ней. Строка inbox остается заблокированной
+     * до фиксации, поэтому другой экземпляр не захватит то же обновление
+     */
+    private void handle(Update update, Runnable action) {
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                if (inboxUpdateRepository.claim(update.updateId(), LocalDateTime.now()) == 0) {
+                    logger.debug("Update {} is already processed, skipping", update.updateId());
+                    return;
+                }
+                action.run();
+                inboxUpdateRepository.complete(update.updateId(), InboxStatus.PROCESSED, LocalDateTime.now());
+            });
+        } catch (RuntimeException e) {
+            // Изменения обработчика откатились вместе с захватом; повтор упадет так же, поэтому запись закрывается
+            inboxUpdateRepository.complete(update.updateId(), InboxStatus.FAILED, LocalDateTime.now());
+            throw e;
+        }
+    }
+
+    /**
+     * Возвращает в очередь записи, оставшиеся в обработке с прошлого запуска
+     */
+    private void releaseExpiredClaims() {
+        int released = inboxUpdateRepository.releaseExpiredClaims(LocalDateTime.now().minusSeconds(claimLeaseSeconds));
+        if (released > 0) {
+            logger.warn("Returned {} interrupted updates to the inbox", released);
+        }
+    }
+
+    @Scheduled(fixedRate = 3600000)
+    public void deleteCompleted() {
+        int deleted = inboxUpdateRepository.deleteCompletedBefore(LocalDateTime.now().minusHours(retentionHours));
+        if (deleted > 0) {
+            logger.info("Deleted {} processed updates from the inbox", deleted);
+        }
+    }
+}
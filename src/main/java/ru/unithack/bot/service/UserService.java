@@ -1,6 +1,10 @@
 package ru.unithack.bot.service;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import ru.unithack.bot.domain.enums.UserRole;
@@ -8,22 +12,34 @@ import ru.unithack.bot.domain.model.Role;
 import ru.unithack.bot.domain.model.RoleUser;
 import ru.unithack.bot.domain.model.User;
 import ru.unithack.bot.domain.model.UserInfo;
+import ru.unithack.bot.domain.projection.UserDirectoryEntry;
+import ru.unithack.bot.domain.projection.UserDirectoryPage;
+import ru.unithack.bot.domain.projection.UserSnapshot;
 import ru.unithack.bot.infrastructure.repository.UserRepository;
 
 import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
 
 @Service
 public class UserService {
 
+    private static final Logger logger = LoggerFactory.getLogger(UserService.class);
+
     private final UserRepository userRepository;
     private final RoleService roleService;
+    private final UserSessionCache sessionCache;
+    private final ApplicationEventPublisher eventPublisher;
 
     @Autowired
-    public UserService(UserRepository userRepository, RoleService roleService) {
+    public UserService(UserRepository userRepository, RoleService roleService,
+                       UserSessionCache sessionCache, ApplicationEventPublisher eventPublisher) {
         this.userRepository = userRepository;
         this.roleService = roleService;
+        this.sessionCache = sessionCache;
+        this.eventPublisher = eventPublisher;
     }
 
     @Transactional
@@ -39,7 +55,9 @@ public class UserService {
         Role role = roleService.getOrCreateRole(userRole);
         new RoleUser(user, role);
 
-        return userRepository.save(user);
+        User saved = userRepository.save(user);
+        rolesChanged(saved.getId());
+        return saved;
     }
 
     @Transactional
@@ -47,6 +65,7 @@ public class UserService {
         return userRepository.findByUserInfo_ChatId(chatId)
                 .map(user -> {
                     user.getUserInfo().setName(newName);
+                    sessionCache.invalidate(chatId);
                     return userRepository.save(user);
                 })
                 .orElseThrow(() -> new IllegalArgumentException("User not found with chatId: " + chatId));
@@ -63,6 +82,7 @@ public class UserService {
             if (!hasRole) {
                 new RoleUser(user, role);
                 userRepository.save(user);
+                rolesChanged(user.getId());
             }
 
             return true;
@@ -81,6 +101,7 @@ public class UserService {
                     if (!hasRole) {
                         new RoleUser(user, role);
                         userRepository.save(user);
+                        rolesChanged(user.getId());
                     }
 
                     return true;
@@ -99,6 +120,7 @@ public class UserService {
                     if (!hasRole) {
                         new RoleUser(user, role);
                         userRepository.save(user);
+                        rolesChanged(user.getId());
                     }
 
                     return true;
@@ -120,6 +142,7 @@ public class UserService {
                             roleUser.setRole(null);
                         }
                         userRepository.save(user);
+                        rolesChanged(user.getId());
                         return true;
                     }
 
@@ -132,6 +155,47 @@ public class UserService {
         return userRepository.findByUserInfo_ChatId(chatId);
     }
 
+    /**
+     * Пользователь по chat_id из кеша сессий. Подходит для проверок прав и вывода профиля;
+     * для изменений нужна сущность из findUserByChatId
+     */
+    public Optional<UserSnapshot> findSnapshotByChatId(Long chatId) {
+        return Optional.ofNullable(sessionCache.get(chatId, this::loadSnapshot));
+    }
+
+    /**
+     * Сохраняет имя и username из Telegram, если они отличаются от известных.
+     * Сравнение идет с кешем, поэтому для пользователя без изменений запросов к базе нет
+     */
+    public void updateProfileIfChanged(Long chatId, String name, String username) {
+        findSnapshotByChatId(chatId).ifPresent(snapshot -> {
+            boolean nameChanged = !name.equals(snapshot.name());
+            boolean usernameChanged = username != null && !username.equals(snapshot.username());
+            if (!nameChanged && !usernameChanged) {
+                return;
+            }
+
+            if (nameChanged) {
+                logger.info("Updating user name from '{}' to '{}' for chatId {}", snapshot.name(), name, chatId);
+            }
+            if (usernameChanged) {
+                logger.info("Updating username from '{}' to '{}' for chatId {}", snapshot.username(), username, chatId);
+            }
+            userRepository.updateProfile(chatId, name, usernameChanged ? username : snapshot.username());
+            sessionCache.invalidate(chatId);
+        });
+    }
+
+    private UserSnapshot loadSnapshot(Long chatId) {
+        return userRepository.findUserInfoByChatId(chatId)
+                .map(info -> {
+                    Long userId = info.getUser().getId();
+                    return new UserSnapshot(userId, chatId, info.getName(), info.getUsername(),
+                            info.isReachable(), roleService.getUserRoles(userId));
+                })
+                .orElse(null);
+    }
+
     @Transactional(readOnly = true)
     public Optional<User> findUserByName(String name) {
         return userRepository.findByUserInfo_Name(name);
@@ -142,13 +206,41 @@ public class UserService {
         return userRepository.findAll();
     }
 
+    /**
+     * Страница справочника пользователей по ключу user_id
+     * @param anchorUserId граница страницы: 0 для первой страницы
+     * @param forward true - пользователи после границы, false - перед ней
+     */
     @Transactional(readOnly = true)
-    public boolean hasRole(Long userId, UserRole userRole) {
-        return roleService.hasRole(userId, userRole);
+    public UserDirectoryPage getUserDirectoryPage(long anchorUserId, boolean forward, int pageSize) {
+        PageRequest limit = PageRequest.of(0, pageSize + 1);
+        if (forward) {
+            List<UserDirectoryEntry> entries = userRepository.findDirectoryAfter(anchorUserId, limit);
+            boolean hasNext = entries.size() > pageSize;
+            return new UserDirectoryPage(hasNext ? entries.subList(0, pageSize) : entries, anchorUserId > 0, hasNext);
+        }
+
+        List<UserDirectoryEntry> entries = new ArrayList<>(userRepository.findDirectoryBefore(anchorUserId, limit));
+        boolean hasPrevious = entries.size() > pageSize;
+        if (hasPrevious) {
+            entries = entries.subList(0, pageSize);
+        }
+        Collections.reverse(entries);
+        return new UserDirectoryPage(entries, hasPrevious, true);
     }
 
     @Transactional(readOnly = true)
     public Optional<User> findUserById(Long userId) {
         return userRepository.findById(userId);
     }
-} 
\ No newline at end of file
+
+    /**
+     * Роли сбрасываются сразу, чтобы изменение было видно в текущей транзакции,
+     * и еще раз после фиксации: параллельный запрос мог загрузить их до того,
+     * как изменение стало видно в базе
+     */
+    private void rolesChanged(Long userId) {
+        sessionCache.invalidateUser(userId);
+        eventPublisher.publishEvent(new RoleService.RolesChanged(userId));
+    }
+}
@@ -0,0 +1,111 @@
+package ru.unithack.bot.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import ru.unithack.bot.domain.projection.UserSnapshot;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * Кеш пользователей по chat_id. Записи живут ограниченное время и удаляются при изменении
+ * профиля или ролей. Размер ограничен: при переполнении новые пользователи просто не кешируются
+ * до очередной очистки устаревших записей.
+ */
+@Component
+public class UserSessionCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(UserSessionCache.class);
+
+    private final Map<Long, Entry> entries = new ConcurrentHashMap<>();
+    private final long ttlNanos;
+    private final int maxSize;
+    private final Counter hits;
+    private final Counter misses;
+
+    @Autowired
+    public UserSessionCache(@Value("${app.user-cache.ttl-seconds:300}") long ttlSeconds,
+                            @Value("${app.user-cache.max-size:10000}") int maxSize,
+                            MeterRegistry meterRegistry) {
+        this.ttlNanos = Duration.ofSeconds(ttlSeconds).toNanos();
+        this.maxSize = maxSize;
+        this.hits = Counter.builder("bot.users.cache")
+                .description("User lookups by chat id")
+                .tag("result", "hit")
+                .register(meterRegistry);
+        this.misses = Counter.builder("bot.users.cache")
+                .description("User lookups by chat id")
+                .tag("result", "miss")
+                .register(meterRegistry);
+        Gauge.builder("bot.users.cached", entries, Map::size)
+                .description("Users held in the session cache")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Возвращает пользователя из кеша или загружает его
+     * @param loader возвращает null для незарегистрированного пользователя; такой результат не кешируется
+     */
+    public UserSnapshot get(Long chatId, Function<Long, UserSnapshot> loader) {
+        long now = System.nanoTime();
+        Entry entry = entries.get(chatId);
+        if (entry != null && !entry.isExpired(now)) {
+            hits.increment();
+            return entry.snapshot;
+        }
+
+        misses.increment();
+        UserSnapshot snapshot = loader.apply(chatId);
+        if (snapshot != null && (entries.size() < maxSize || entry != null)) {
+            entries.put(chatId, new Entry(snapshot, now + ttlNanos));
+        }
+        return snapshot;
+    }
+
+    public void invalidate(Long chatId) {
+        entries.remove(chatId);
+    }
+
+    /**
+     * Удаляет запись по user_id. Проходит по всему кешу, но вызывается только при изменении ролей
+     */
+    public void invalidateUser(Long userId) {
+        entries.values().removeIf(entry -> entry.snapshot.id().equals(userId));
+    }
+
+    /**
+     * Повторно сбрасывает пользователя после фиксации изменения ролей: до фиксации
+     * параллельный запрос мог снова закешировать старые роли
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onRolesChanged(RoleService.RolesChanged event) {
+        invalidateUser(event.userId());
+    }
+
+    @Scheduled(fixedRate = 60000)
+    public void evictExpired() {
+        long now = System.nanoTime();
+        int before = entries.size();
+        entries.values().removeIf(entry -> entry.isExpired(now));
+        int evicted = before - entries.size();
+        if (evicted > 0) {
+            logger.debug("Evicted {} expired user cache entries", evicted);
+        }
+    }
+
+    private record Entry(UserSnapshot snapshot, long expiresAt) {
+        private boolean isExpired(long now) {
+            return now - expiresAt >= 0;
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package ru.unithack.bot.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import ru.unithack.bot.infrastructure.repository.WorkshopRepository;
+
+import java.util.List;
+
+/**
+ * Периодически сверяет счетчики участников активных мастер-классов с таблицей регистраций.
+ * Счетчики меняются в тех же транзакциях, что и регистрации, поэтому расхождение означает
+ * изменение регистраций в обход WorkshopService, например вручную в базе.
+ * Первый проход после запуска обходит все мастер-классы, включая неактивные: так заполняются
+ * счетчики и номер листа ожидания мастер-классов, созданных до их появления.
+ */
+@Component
+public class WorkshopCounterReconciler {
+
+    private static final Logger logger = LoggerFactory.getLogger(WorkshopCounterReconciler.class);
+
+    private final WorkshopRepository workshopRepository;
+    private final WorkshopService workshopService;
+    private volatile boolean backfilled;
+
+    @Autowired
+    public WorkshopCounterReconciler(WorkshopRepository workshopRepository, WorkshopService workshopService) {
+        this.workshopRepository = workshopRepository;
+        this.workshopService = workshopService;
+    }
+
+    @Scheduled(fixedDelayString = "${app.workshop.counter-reconcile-ms:600000}")
+    public void reconcile() {
+        List<Long> workshopIds = backfilled ? workshopRepository.findActiveIds() : workshopRepository.findAllIds();
+        int fixed = 0;
+        for (Long workshopId : workshopIds) {
+            try {
+                if (workshopService.reconcileCounters(workshopId)) {
+                    fixed++;
+                }
+            } catch (Exception e) {
+                logger.error("Failed to reconcile counters for workshop {}", workshopId, e);
+            }
+        }
+        if (fixed > 0) {
+            logger.warn("Reconciled registration counters for {} workshops", fixed);
+        }
+        backfilled = true;
+    }
+}
@@ -0,0 +1,178 @@
+package ru.unithack.bot.service;
+
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.unithack.bot.domain.enums.ReminderKind;
+import ru.unithack.bot.domain.enums.ReminderStatus;
+import ru.unithack.bot.domain.model.Workshop;
+import ru.unithack.bot.domain.model.WorkshopRegistration;
+import ru.unithack.bot.domain.model.WorkshopReminder;
+import ru.unithack.bot.infrastructure.repository.WorkshopRegistrationRepository;
+import ru.unithack.bot.infrastructure.repository.WorkshopReminderRepository;
+import ru.unithack.bot.infrastructure.repository.WorkshopRepository;
+import ru.unithack.bot.infrastructure.scheduling.TimerWheel;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Напоминания о мастер-классах за сутки и за час до начала.
+ * <p>
+ * Для каждого напоминания в таблице workshop_reminders хранится срок и статус, а в колесе
+ * таймеров - задача на этот срок. Сработавший таймер забирает напоминание условным обновлением
+ * и в той же транзакции записывает сообщения в outbox, поэтому напоминание уходит один раз,
+ * даже если таймер запустится повторно. После перезапуска ожидающие напоминания снова
+ * ставятся в колесо из журнала.
+ */
+@Service
+public class WorkshopReminderService {
+
+    private static final Logger logger = LoggerFactory.getLogger(WorkshopReminderService.class);
+
+    /**
+     * Событие об изменении напоминаний мастер-класса, публикуется внутри транзакции
+     */
+    public record RemindersChanged(Long workshopId) {
+    }
+
+    private final WorkshopReminderRepository reminderRepository;
+    private final WorkshopRepository workshopRepository;
+    private final WorkshopRegistrationRepository registrationRepository;
+    private final NotificationService notificationService;
+    private final TimerWheel timerWheel;
+    private final TransactionTemplate transactionTemplate;
+    private final ApplicationEventPublisher eventPublisher;
+
+    @Autowired
+    public WorkshopReminderService(WorkshopReminderRepository reminderRepository,
+                                   WorkshopRepository workshopRepository,
+                                   WorkshopRegistrationRepository registrationRepository,
+                                   NotificationService notificationService,
+                                   TimerWheel timerWheel,
+                                   TransactionTemplate transactionTemplate,
+                                   ApplicationEventPublisher eventPublisher) {
+        this.reminderRepository = reminderRepository;
+        this.workshopRepository = workshopRepository;
+        this.registrationRepository = registrationRepository;
+        this.notificationService = notificationService;
+        this.timerWheel = timerWheel;
+        this.transactionTemplate = transactionTemplate;
+        this.eventPublisher = eventPublisher;
+    }
+
+    /**
+     * Создает записи для мастер-классов, появившихся до журнала напоминаний,
+     * и ставит все ожидающие напоминания в колесо таймеров
+     */
+    @PostConstruct
+    public void init() {
+        transactionTemplate.executeWithoutResult(status -> {
+            for (Workshop workshop : workshopRepository.findUpcomingWithoutReminders(LocalDateTime.now())) {
+                updateReminders(workshop);
+            }
+        });
+
+        List<WorkshopReminder> pending = reminderRepository.findByStatus(ReminderStatus.PENDING);
+        pending.forEach(this::schedule);
+        logger.info("Scheduled {} pending workshop reminders", pending.size());
+    }
+
+    /**
+     * Приводит напоминания в соответствие со временем начала и активностью мастер-класса.
+     * Вызывается в транзакции, меняющей мастер-класс; таймеры переставляются после ее фиксации
+     */
+    public void updateReminders(Workshop workshop) {
+        LocalDateTime now = LocalDateTime.now();
+        for (ReminderKind kind : ReminderKind.values()) {
+            LocalDateTime dueAt = workshop.getStartTime().minus(kind.getOffset());
+            WorkshopReminder reminder = reminderRepository.findByWorkshopIdAndKind(workshop.getId(), kind)
+                    .orElseGet(() -> new WorkshopReminder(workshop.getId(), kind, dueAt, ReminderStatus.PENDING));
+
+            boolean moved = !dueAt.equals(reminder.getDueAt());
+            if (reminder.getStatus() == ReminderStatus.SENT && !moved) {
+                continue;
+            }
+            reminder.setDueAt(dueAt);
+            // Напоминание, срок которого уже прошел при создании или переносе, не отправляется
+            reminder.setStatus(workshop.isActive() && dueAt.isAfter(now)
+                    ? ReminderStatus.PENDING : ReminderStatus.SKIPPED);
+            reminderRepository.save(reminder);
+        }
+        eventPublisher.publishEvent(new RemindersChanged(workshop.getId()));
+    }
+
+    /**
+     * Удаляет напоминания мастер-класса. Вызывается в транзакции удаления мастер-класса
+     */
+    public void removeReminders(Long workshopId) {
+        reminderRepository.deleteByWorkshopId(workshopId);
+        eventPublisher.publishEvent(new RemindersChanged(workshopId));
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onRemindersChanged(RemindersChanged event) {
+        for (ReminderKind kind : ReminderKind.values()) {
+            reminderRepository.findByWorkshopIdAndKind(event.workshopId(), kind)
+                    .filter(reminder -> reminder.getStatus() == ReminderStatus.PENDING)
+                    .ifPresentOrElse(this::schedule, () -> timerWheel.cancel(timerKey(event.workshopId(), kind)));
+        }
+    }
+
+    private void schedule(WorkshopReminder reminder) {
+        Long id = reminder.getId();
+        LocalDateTime dueAt = reminder.getDueAt();
+        timerWheel.schedule(timerKey(reminder.getWorkshopId(), reminder.getKind()), dueAt, () -> fire(id, dueAt));
+    }
+
+    /**
+     * Отправляет напоминание, если его еще никто не забрал
+     */
+    private void fire(Long reminderId, LocalDateTime dueAt) {
+        transactionTemplate.executeWithoutResult(status -> {
+            LocalDateTime now = LocalDateTime.now();
+            if (reminderRepository.claim(reminderId, dueAt, now) == 0) {
+                return;
+            }
+
+            WorkshopReminder reminder = reminderRepository.findById(reminderId).orElseThrow();
+            Workshop workshop = workshopRepository.findById(reminder.getWorkshopId()).orElse(null);
+            if (workshop == null || !workshop.isActive() || !isStillRelevant(reminder.getKind(), workshop, now)) {
+                // Например, приложение было остановлено, пока подошел срок следующего напоминания
+                reminder.setStatus(ReminderStatus.SKIPPED);
+                logger.info("Skipped outdated {} reminder for workshop {}", reminder.getKind(), reminder.getWorkshopId());
+                return;
+            }
+
+            List<WorkshopRegistration> participants = registrationRepository.findReminderRecipients(workshop);
+            notificationService.sendWorkshopReminder(workshop, participants, reminder.getKind());
+            logger.info("Queued {} reminder for workshop {} to {} participants",
+                    reminder.getKind(), workshop.getId(), participants.size());
+        });
+    }
+
+    /**
+     * Напоминание теряет смысл, когда мастер-класс начался или подошел срок более позднего напоминания
+     */
+    private boolean isStillRelevant(ReminderKind kind, Workshop workshop, LocalDateTime now) {
+        if (!now.isBefore(workshop.getStartTime())) {
+            return false;
+        }
+        for (ReminderKind other : ReminderKind.values()) {
+            if (other.getOffset().compareTo(kind.getOffset()) < 0
+                    && !now.isBefore(workshop.getStartTime().minus(other.getOffset()))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static String timerKey(Long workshopId, ReminderKind kind) {
+        return "workshop-reminder:" + workshopId + ":" + kind;
+    }
+}
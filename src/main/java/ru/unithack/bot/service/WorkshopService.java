@@ -3,12 +3,15 @@ package ru.unithack.bot.service;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import ru.unithack.bot.domain.model.User;
 import ru.unithack.bot.domain.model.Workshop;
 import ru.unithack.bot.domain.model.WorkshopRegistration;
+import ru.unithack.bot.domain.projection.ConfirmationDeadline;
+import ru.unithack.bot.domain.projection.UserWorkshopEntry;
+import ru.unithack.bot.domain.projection.WorkshopCatalogEntry;
 import ru.unithack.bot.infrastructure.repository.UserRepository;
 import ru.unithack.bot.infrastructure.repository.WorkshopRegistrationRepository;
 import ru.unithack.bot.infrastructure.repository.WorkshopRepository;
@@ -29,17 +32,23 @@ public class WorkshopService {
     private final WorkshopRepository workshopRepository;
     private final WorkshopRegistrationRepository registrationRepository;
     private final NotificationService notificationService;
+    private final WorkshopReminderService workshopReminderService;
     private final UserRepository userRepository;
+    private final ApplicationEventPublisher eventPublisher;
 
     @Autowired
     public WorkshopService(WorkshopRepository workshopRepository,
                            WorkshopRegistrationRepository registrationRepository,
                            NotificationService notificationService,
-                           UserRepository userRepository) {
+                           WorkshopReminderService workshopReminderService,
+                           UserRepository userRepository,
+                           ApplicationEventPublisher eventPublisher) {
         this.workshopRepository = workshopRepository;
         this.registrationRepository = registrationRepository;
         this.notificationService = notificationService;
+        this.workshopReminderService = workshopReminderService;
         this.userRepository = userRepository;
+        this.eventPublisher = eventPublisher;
     }
 
     @Transactional
@@ -53,7 +62,9 @@ public class WorkshopService {
         workshop.setCapacity(capacity);
         workshop.setActive(true);
 
-        return workshopRepository.save(workshop);
+        Workshop savedWorkshop = workshopRepository.save(workshop);
+        workshopReminderService.updateReminders(savedWorkshop);
+        return savedWorkshop;
     }
 
     @Transactional
@@ -77,9 +88,13 @@ public class WorkshopService {
             Workshop updatedWorkshop = workshopRepository.save(workshop);
             logger.info("Workshop saved with ID {}: {}", updatedWorkshop.getId(), updatedWorkshop.getTitle());
             
+            // Reschedule reminders if the start time or the active flag changed
+            workshopReminderService.updateReminders(updatedWorkshop);
+            
             // Get all participants (confirmed + waitlist) and notify them about the change
             List<WorkshopRegistration> confirmedParticipants = registrationRepository.findByWorkshopAndWaitlistFalseOrderByRegistrationTimeAsc(workshop);
-            List<WorkshopRegistration> waitlistParticipants = registrationRepository.findByWorkshopAndWaitlistTrueOrderByRegistrationTimeAsc(workshop);
+            List<WorkshopRegistration> waitlistParticipants = assignWaitlistPositions(
+                    registrationRepository.findByWorkshopAndWaitlistTrueOrderByWaitlistSequenceAsc(workshop));
             
             List<WorkshopRegistration> allParticipants = new ArrayList<>();
             allParticipants.addAll(confirmedParticipants);
@@ -105,7 +120,15 @@ public class WorkshopService {
 
     @Transactional(readOnly = true)
     public List<Workshop> getAllActiveWorkshops() {
-        return workshopRepository.findByActiveTrueWithRegistrations();
+        return workshopRepository.findByActiveTrueOrderByStartTimeAsc();
+    }
+
+    /**
+     * Каталог активных мастер-классов с отметкой о записи пользователя
+     */
+    @Transactional(readOnly = true)
+    public List<WorkshopCatalogEntry> getWorkshopCatalog(Long userId) {
+        return workshopRepository.findCatalog(userId);
     }
 
     @Transactional(readOnly = true)
@@ -115,7 +138,7 @@ public class WorkshopService {
 
     @Transactional(readOnly = true)
     public Optional<Workshop> getWorkshopById(Long id) {
-        return workshopRepository.findByIdWithRegistrations(id);
+        return workshopRepository.findById(id);
     }
 
     @Transactional
@@ -131,7 +154,7 @@ public class WorkshopService {
                 
                 // Get all participants (confirmed + waitlist) for notification
                 List<WorkshopRegistration> confirmedParticipants = registrationRepository.findByWorkshopAndWaitlistFalseOrderByRegistrationTimeAsc(workshop);
-                List<WorkshopRegistration> waitlistParticipants = registrationRepository.findByWorkshopAndWaitlistTrueOrderByRegistrationTimeAsc(workshop);
+                List<WorkshopRegistration> waitlistParticipants = registrationRepository.findByWorkshopAndWaitlistTrueOrderByWaitlistSequenceAsc(workshop);
                 
                 List<WorkshopRegistration> allParticipants = new ArrayList<>();
                 allParticipants.addAll(confirmedParticipants);
@@ -153,6 +176,7 @@ public class WorkshopService {
                 }
                 
                 // Delete the workshop
+                workshopReminderService.removeReminders(id);
                 workshopRepository.deleteById(id);
                 logger.info("Workshop with ID {} successfully deleted", id);
                 return true;
@@ -167,6 +191,7 @@ public class WorkshopService {
      */
     @Transactional
     public Optional<WorkshopRegistration> registerParticipant(Workshop workshop, User user) {
+        workshop = lockWorkshop(workshop);
         if (registrationRepository.findByWorkshopAndUser(workshop, user).isPresent()) {
             logger.info("User {} is already registered for workshop {}", user.getId(), workshop.getId());
             return Optional.empty();
@@ -178,17 +203,15 @@ public class WorkshopService {
         registration.setRegistrationTime(LocalDateTime.now());
 
         // Check if there's still capacity
-        int registeredCount = registrationRepository.countRegisteredParticipants(workshop);
-        if (registeredCount >= workshop.getCapacity()) {
+        if (workshop.getRegisteredCount() >= workshop.getCapacity()) {
             // Add to waitlist
             registration.setWaitlist(true);
             
-            // Set waitlist position
-            Optional<Integer> maxPositionOpt = registrationRepository.findMaxWaitlistPosition(workshop);
-            int position = maxPositionOpt.orElse(0) + 1;
-            registration.setWaitlistPosition(position);
+            // Занять место в конце очереди
+            int position = enqueueToWaitlist(workshop, registration);
             
             WorkshopRegistration savedRegistration = registrationRepository.save(registration);
+            workshopRepository.adjustCounters(workshop.getId(), 0, 1);
             
             // Send waitlist notification with position
             notificationService.sendWaitlistNotification(savedRegistration);
@@ -200,6 +223,7 @@ public class WorkshopService {
         } else {
             // Regular registration
             registration = registrationRepository.save(registration);
+            workshopRepository.adjustCounters(workshop.getId(), 1, 0);
             logger.info("Registered user {} for workshop {}", user.getId(), workshop.getId());
             return Optional.of(registration);
         }
@@ -210,6 +234,7 @@ public class WorkshopService {
      */
     @Transactional
     public boolean cancelRegistration(Workshop workshop, User user) {
+        workshop = lockWorkshop(workshop);
         Optional<WorkshopRegistration> registrationOpt = registrationRepository.findByWorkshopAndUser(workshop, user);
         if (registrationOpt.isEmpty()) {
             return false;
@@ -217,16 +242,13 @@ public class WorkshopService {
 
         WorkshopRegistration registration = registrationOpt.get();
         boolean wasWaitlisted = registration.isWaitlist();
-        int waitlistPosition = registration.getWaitlistPosition() != null ? registration.getWaitlistPosition() : 0;
         
         registrationRepository.delete(registration);
+        workshopRepository.adjustCounters(workshop.getId(), wasWaitlisted ? 0 : -1, wasWaitlisted ? -1 : 0);
         
-        // If it was a waitlist registration, decrement the position of all following waitlist entries
-        if (wasWaitlisted && waitlistPosition > 0) {
-            registrationRepository.decrementWaitlistPositionsAfter(workshop, waitlistPosition);
-        } 
-        // If it was a regular registration, offer the spot to all users in the waitlist
-        else if (!wasWaitlisted) {
+        // If it was a regular registration, offer the spot to all users in the waitlist.
+        // Leaving the waitlist needs no renumbering: positions are computed from the sequence on read
+        if (!wasWaitlisted) {
             notifyAllWaitlistUsers(workshop);
         }
 
@@ -238,7 +260,7 @@ public class WorkshopService {
      */
     @Transactional
     public void notifyAllWaitlistUsers(Workshop workshop) {
-        List<WorkshopRegistration> waitlist = registrationRepository.findByWorkshopAndWaitlistTrueOrderByRegistrationTimeAsc(workshop);
+        List<WorkshopRegistration> waitlist = registrationRepository.findByWorkshopAndWaitlistTrueOrderByWaitlistSequenceAsc(workshop);
         if (waitlist.isEmpty()) {
             return;
         }
@@ -257,6 +279,9 @@ public class WorkshopService {
             logger.info("Sent confirmation request to user {} for workshop {}, deadline: {}",
                     waitlistReg.getUser().getId(), workshop.getId(), deadline);
         }
+        
+        // Таймер истечения срока ставится после фиксации транзакции
+        eventPublisher.publishEvent(new ConfirmationDeadline(workshop.getId(), deadline));
     }
     
     /**
@@ -264,6 +289,7 @@ public class WorkshopService {
      */
     @Transactional
     public boolean confirmWorkshopRegistration(Workshop workshop, User user) {
+        workshop = lockWorkshop(workshop);
         Optional<WorkshopRegistration> registrationOpt = registrationRepository.findByWorkshopAndUser(workshop, user);
         if (registrationOpt.isEmpty()) {
             return false;
@@ -279,8 +305,7 @@ public class WorkshopService {
         }
         
         // Проверка на количество участников, чтобы убедиться, что место всё ещё доступно
-        int registeredCount = registrationRepository.countRegisteredParticipants(workshop);
-        if (registeredCount >= workshop.getCapacity()) {
+        if (workshop.getRegisteredCount() >= workshop.getCapacity()) {
             // Место уже занято другим участником из листа ожидания
             notificationService.sendSpotTakenNotification(registration);
             
@@ -293,19 +318,14 @@ public class WorkshopService {
         }
         
         // Move from waitlist to confirmed participants
-        int position = registration.getWaitlistPosition() != null ? registration.getWaitlistPosition() : 0;
-        
         registration.setWaitlist(false);
         registration.setPendingConfirmation(false);
         registration.setConfirmationDeadline(null);
+        registration.setWaitlistSequence(null);
         registration.setWaitlistPosition(null);
         
         registrationRepository.save(registration);
-        
-        // Update waitlist positions for others
-        if (position > 0) {
-            registrationRepository.decrementWaitlistPositionsAfter(workshop, position);
-        }
+        workshopRepository.adjustCounters(workshop.getId(), 1, -1);
         
         // Send confirmation notification
         notificationService.sendRegistrationConfirmedNotification(registration);
@@ -322,7 +342,7 @@ public class WorkshopService {
      */
     @Transactional
     private void closeConfirmationForOthers(Workshop workshop, User confirmedUser) {
-        List<WorkshopRegistration> waitlistUsers = registrationRepository.findByWorkshopAndWaitlistTrueOrderByRegistrationTimeAsc(workshop);
+        List<WorkshopRegistration> waitlistUsers = registrationRepository.findByWorkshopAndWaitlistTrueOrderByWaitlistSequenceAsc(workshop);
         
         for (WorkshopRegistration waitlistReg : waitlistUsers) {
             if (!waitlistReg.getUser().getId().equals(confirmedUser.getId()) && waitlistReg.isPendingConfirmation()) {
@@ -340,63 +360,55 @@ public class WorkshopService {
     }
     
     /**
-     * Проверяет истекшие подтверждения каждую минуту и удаляет пользователей из листа ожидания
+     * Обрабатывает истекшие подтверждения мастер-класса: удаляет не подтвердивших из листа ожидания
+     * и предлагает освободившиеся места оставшимся. Вызывается таймером в момент истечения срока
      */
-    @Scheduled(fixedRate = 60000) // Каждую минуту (60000 мс)
     @Transactional
-    public void processExpiredConfirmations() {
-        logger.debug("Checking for expired confirmations");
+    public void expireConfirmations(Long workshopId) {
+        Workshop workshop = workshopRepository.findByIdForUpdate(workshopId).orElse(null);
+        if (workshop == null || !workshop.isActive()) {
+            return;
+        }
         LocalDateTime now = LocalDateTime.now();
         
-        // Get all active workshops
-        List<Workshop> activeWorkshops = workshopRepository.findByActiveTrue();
+        // Find expired confirmations for this workshop
+        List<WorkshopRegistration> expiredConfirmations = 
+            registrationRepository.findExpiredConfirmations(workshop, now);
         
-        for (Workshop workshop : activeWorkshops) {
-            // Find expired confirmations for this workshop
-            List<WorkshopRegistration> expiredConfirmations = 
-                registrationRepository.findExpiredConfirmations(workshop, now);
+        for (WorkshopRegistration expiredReg : expiredConfirmations) {
+            // Send notification about expired confirmation
+            notificationService.sendConfirmationExpiredNotification(expiredReg);
             
-            for (WorkshopRegistration expiredReg : expiredConfirmations) {
-                // Send notification about expired confirmation
-                notificationService.sendConfirmationExpiredNotification(expiredReg);
+            // Если пользователь не подтвердил участие, удаляем его из листа ожидания
+            if (expiredReg.isWaitlist()) {
+                // Удаляем пользователя
+                registrationRepository.delete(expiredReg);
+                workshopRepository.adjustCounters(workshop.getId(), 0, -1);
                 
-                // Если пользователь не подтвердил участие, удаляем его из листа ожидания
-                if (expiredReg.isWaitlist()) {
-                    int position = expiredReg.getWaitlistPosition() != null ? expiredReg.getWaitlistPosition() : 0;
-                    
-                    // Удаляем пользователя
-                    registrationRepository.delete(expiredReg);
-                    
-                    // Обновляем позиции в листе ожидания
-                    if (position > 0) {
-                        registrationRepository.decrementWaitlistPositionsAfter(workshop, position);
-                    }
-                    
-                    logger.info("Removed user {} from waitlist due to expired confirmation", 
-                        expiredReg.getUser().getId());
-                } else {
-                    // Сбрасываем флаг подтверждения
-                    expiredReg.setPendingConfirmation(false);
-                    expiredReg.setConfirmationDeadline(null);
-                    registrationRepository.save(expiredReg);
-                    
-                    logger.info("Reset confirmation status for user {} for workshop {}", 
-                        expiredReg.getUser().getId(), workshop.getId());
-                }
-            }
-            
-            // Проверяем, есть ли свободные места для следующего уведомления
-            int registeredCount = registrationRepository.countRegisteredParticipants(workshop);
-            if (registeredCount < workshop.getCapacity() && !expiredConfirmations.isEmpty()) {
-                // Если есть свободные места и истекли какие-то подтверждения, 
-                // уведомляем всех оставшихся в листе ожидания
-                notifyAllWaitlistUsers(workshop);
+                logger.info("Removed user {} from waitlist due to expired confirmation", 
+                    expiredReg.getUser().getId());
+            } else {
+                // Сбрасываем флаг подтверждения
+                expiredReg.setPendingConfirmation(false);
+                expiredReg.setConfirmationDeadline(null);
+                registrationRepository.save(expiredReg);
+                
+                logger.info("Reset confirmation status for user {} for workshop {}", 
+                    expiredReg.getUser().getId(), workshop.getId());
             }
         }
+        
+        // Проверяем, есть ли свободные места для следующего уведомления
+        if (workshop.getRegisteredCount() < workshop.getCapacity() && !expiredConfirmations.isEmpty()) {
+            // Если есть свободные места и истекли какие-то подтверждения, 
+            // уведомляем всех оставшихся в листе ожидания
+            notifyAllWaitlistUsers(workshop);
+        }
     }
 
     @Transactional
     public Optional<WorkshopRegistration> manuallyAddParticipant(Workshop workshop, User user, boolean addToWaitlist) {
+        workshop = lockWorkshop(workshop);
         Optional<WorkshopRegistration> existingRegistration = registrationRepository.findByWorkshopAndUser(workshop, user);
 
         if (existingRegistration.isPresent()) {
@@ -405,20 +417,15 @@ public class WorkshopService {
             if (registration.isWaitlist() != addToWaitlist) {
                 if (addToWaitlist) {
                     // Add to waitlist
-                    Optional<Integer> maxPositionOpt = registrationRepository.findMaxWaitlistPosition(workshop);
-                    int position = maxPositionOpt.orElse(0) + 1;
-                    registration.setWaitlistPosition(position);
+                    enqueueToWaitlist(workshop, registration);
                 } else {
                     // Remove from waitlist
-                    int oldPosition = registration.getWaitlistPosition() != null ? registration.getWaitlistPosition() : 0;
+                    registration.setWaitlistSequence(null);
                     registration.setWaitlistPosition(null);
-                    
-                    if (oldPosition > 0) {
-                        registrationRepository.decrementWaitlistPositionsAfter(workshop, oldPosition);
-                    }
                 }
                 
                 registration.setWaitlist(addToWaitlist);
+                workshopRepository.adjustCounters(workshop.getId(), addToWaitlist ? -1 : 1, addToWaitlist ? 1 : -1);
                 return Optional.of(registrationRepository.save(registration));
             }
             return existingRegistration;
@@ -431,15 +438,76 @@ public class WorkshopService {
         registration.setWaitlist(addToWaitlist);
         
         if (addToWaitlist) {
-            // Set waitlist position
-            Optional<Integer> maxPositionOpt = registrationRepository.findMaxWaitlistPosition(workshop);
-            int position = maxPositionOpt.orElse(0) + 1;
-            registration.setWaitlistPosition(position);
+            enqueueToWaitlist(workshop, registration);
         }
 
+        workshopRepository.adjustCounters(workshop.getId(), addToWaitlist ? 0 : 1, addToWaitlist ? 1 : 0);
         return Optional.of(registrationRepository.save(registration));
     }
 
+    /**
+     * Сверяет счетчики мастер-класса с таблицей регистраций и исправляет расхождение
+     * @return true, если счетчики пришлось исправить
+     */
+    @Transactional
+    public boolean reconcileCounters(Long workshopId) {
+        Workshop workshop = workshopRepository.findByIdForUpdate(workshopId).orElse(null);
+        if (workshop == null) {
+            return false;
+        }
+        boolean fixed = false;
+        // Номера листа ожидания, выданные до появления счетчика номеров, не должны повторяться
+        int maxWaitlistSequence = registrationRepository.findMaxWaitlistSequence(workshop).orElse(0);
+        if (maxWaitlistSequence >= workshop.getNextWaitlistSequence()) {
+            logger.warn("Workshop {} next waitlist sequence {} is behind issued sequence {}", workshopId,
+                    workshop.getNextWaitlistSequence(), maxWaitlistSequence);
+            workshopRepository.setNextWaitlistSequence(workshopId, maxWaitlistSequence + 1);
+            fixed = true;
+        }
+
+        int registeredCount = registrationRepository.countRegisteredParticipants(workshop);
+        int waitlistCount = registrationRepository.countWaitlistParticipants(workshop);
+        if (registeredCount != workshop.getRegisteredCount() || waitlistCount != workshop.getWaitlistCount()) {
+            logger.warn("Workshop {} counters drifted: registered {} -> {}, waitlist {} -> {}", workshopId,
+                    workshop.getRegisteredCount(), registeredCount, workshop.getWaitlistCount(), waitlistCount);
+            workshopRepository.setCounters(workshopId, registeredCount, waitlistCount);
+            fixed = true;
+        }
+        return fixed;
+    }
+
+    /**
+     * Ставит регистрацию в конец листа ожидания. Вызывается под блокировкой мастер-класса
+     * @return позиция в листе ожидания
+     */
+    private int enqueueToWaitlist(Workshop workshop, WorkshopRegistration registration) {
+        int position = workshop.getWaitlistCount() + 1;
+        registration.setWaitlistSequence(workshop.getNextWaitlistSequence());
+        workshopRepository.advanceWaitlistSequence(workshop.getId());
+        registration.setWaitlistPosition(position);
+        return position;
+    }
+
+    /**
+     * Проставляет позиции в листе ожидания, упорядоченном по порядковому номеру
+     */
+    private static List<WorkshopRegistration> assignWaitlistPositions(List<WorkshopRegistration> waitlist) {
+        for (int i = 0; i < waitlist.size(); i++) {
+            waitlist.get(i).setWaitlistPosition(i + 1);
+        }
+        return waitlist;
+    }
+
+    /**
+     * Блокирует строку мастер-класса до конца транзакции. Записи, отмены и подтверждения
+     * одного мастер-класса выполняются по очереди, поэтому счетчики заблокированной строки
+     * не устаревают между проверкой и вставкой и заменяют подсчет регистраций
+     */
+    private Workshop lockWorkshop(Workshop workshop) {
+        return workshopRepository.findByIdForUpdate(workshop.getId())
+                .orElseThrow(() -> new IllegalArgumentException("Workshop not found with id: " + workshop.getId()));
+    }
+
     @Transactional(readOnly = true)
     public List<WorkshopRegistration> getWorkshopParticipants(Workshop workshop) {
         return registrationRepository.findByWorkshopAndWaitlistFalseOrderByRegistrationTimeAsc(workshop);
@@ -447,7 +515,7 @@ public class WorkshopService {
 
     @Transactional(readOnly = true)
     public List<WorkshopRegistration> getWorkshopWaitlist(Workshop workshop) {
-        return registrationRepository.findByWorkshopAndWaitlistTrueOrderByRegistrationTimeAsc(workshop);
+        return assignWaitlistPositions(registrationRepository.findByWorkshopAndWaitlistTrueOrderByWaitlistSequenceAsc(workshop));
     }
 
     @Transactional(readOnly = true)
@@ -456,30 +524,11 @@ public class WorkshopService {
     }
 
     /**
-     * Получает список мастер-классов, на которые зарегистрирован пользователь,
-     * с жадной загрузкой всех необходимых данных для безопасного отображения
+     * Записи пользователя на мастер-классы для /my_workshops
      */
     @Transactional(readOnly = true)
-    public List<Object[]> getUserWorkshopsWithCounts(User user) {
-        List<WorkshopRegistration> registrations = registrationRepository.findByUserOrderByRegistrationTimeDesc(user);
-        List<Object[]> results = new ArrayList<>();
-        
-        for (WorkshopRegistration reg : registrations) {
-            Workshop workshop = getWorkshopById(reg.getWorkshop().getId()).orElse(null);
-            if (workshop != null) {
-                int registeredCount = getWorkshopParticipants(workshop).size();
-                int waitlistCount = getWorkshopWaitlist(workshop).size();
-                results.add(new Object[]{
-                    workshop, 
-                    registeredCount, 
-                    waitlistCount, 
-                    reg.isWaitlist(),
-                    reg.getWaitlistPosition()
-                });
-            }
-        }
-        
-        return results;
+    public List<UserWorkshopEntry> getUserWorkshopEntries(Long userId) {
+        return registrationRepository.findUserWorkshopEntries(userId);
     }
 
     public String formatWorkshopInfo(Workshop workshop) {
@@ -499,12 +548,8 @@ public class WorkshopService {
     }
 
     public String formatWorkshopListItem(Workshop workshop) {
-        return String.format("%d. %s (%s) - %d/%d мест свободно",
-                workshop.getId(),
-                workshop.getTitle(),
-                workshop.getStartTime().format(DATE_TIME_FORMATTER),
-                workshop.getAvailableSpots(),
-                workshop.getCapacity());
+        return formatWorkshopListItem(workshop.getId(), workshop.getTitle(), workshop.getStartTime(),
+                workshop.getCapacity(), workshop.getRegisteredCount());
     }
 
     // Безопасные методы форматирования, не зависящие от ленивых коллекций
@@ -524,13 +569,24 @@ public class WorkshopService {
         return sb.toString();
     }
     
-    public String formatWorkshopListItemSafe(Workshop workshop, int registeredCount) {
+    public String formatWorkshopListItem(WorkshopCatalogEntry entry) {
+        return formatWorkshopListItem(entry.workshopId(), entry.title(), entry.startTime(),
+                entry.capacity(), entry.registeredCount());
+    }
+
+    public String formatWorkshopListItem(UserWorkshopEntry entry) {
+        return formatWorkshopListItem(entry.workshopId(), entry.title(), entry.startTime(),
+                entry.capacity(), entry.registeredCount());
+    }
+
+    private String formatWorkshopListItem(Long workshopId, String title, LocalDateTime startTime,
+                                          int capacity, int registeredCount) {
         return String.format("%d. %s (%s) - %d/%d мест свободно",
-                workshop.getId(),
-                workshop.getTitle(),
-                workshop.getStartTime().format(DATE_TIME_FORMATTER),
-                workshop.getCapacity() - registeredCount,
-                workshop.getCapacity());
+                workshopId,
+                title,
+                startTime.format(DATE_TIME_FORMATTER),
+                capacity - registeredCount,
+                capacity);
     }
 
     /**
@@ -0,0 +1,28 @@
+package ru.unithack.bot.service.command;
+
+/**
+ * Разобранная команда: имя (например, /register_workshop) и строка аргументов без лишних пробелов
+ */
+public record BotCommand(String name, String args) {
+
+    /**
+     * Разбирает текст сообщения один раз: отделяет имя команды от аргументов
+     * и отбрасывает суффикс @username бота (/help@EventHubBot_bot)
+     */
+    public static BotCommand parse(String text) {
+        String trimmed = text.trim();
+        int end = 0;
+        while (end < trimmed.length() && !Character.isWhitespace(trimmed.charAt(end))) {
+            end++;
+        }
+
+        String name = trimmed.substring(0, end);
+        int mention = name.indexOf('@');
+        if (mention > 0) {
+            name = name.substring(0, mention);
+        }
+
+        String args = end < trimmed.length() ? trimmed.substring(end).trim() : "";
+        return new BotCommand(name, args);
+    }
+}
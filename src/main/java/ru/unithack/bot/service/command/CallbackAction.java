@@ -0,0 +1,54 @@
+package ru.unithack.bot.service.command;
+
+/**
+ * Действия inline-кнопок. Код действия записывается в данные колбэка одним байтом,
+ * поэтому коды нельзя менять или переиспользовать.
+ */
+public enum CallbackAction {
+    MARK_ATTENDANCE(1, "mark_attendance"),
+    SELECT_WORKSHOP_FOR_NEWS(2, "select_workshop_for_news"),
+    REGISTER_WORKSHOP(3, "register_workshop"),
+    CANCEL_WORKSHOP(4, "cancel_workshop"),
+    CONFIRM_WORKSHOP(5, "confirm_workshop"),
+    USERS_PAGE(6, "users_page");
+
+    private static final CallbackAction[] BY_CODE = new CallbackAction[16];
+
+    static {
+        for (CallbackAction action : values()) {
+            BY_CODE[action.code] = action;
+        }
+    }
+
+    private final int code;
+    private final String legacyName;
+
+    CallbackAction(int code, String legacyName) {
+        this.code = code;
+        this.legacyName = legacyName;
+    }
+
+    public int getCode() {
+        return code;
+    }
+
+    /**
+     * Имя действия в старом текстовом формате (action:arg1:arg2)
+     */
+    public String getLegacyName() {
+        return legacyName;
+    }
+
+    public static CallbackAction fromCode(int code) {
+        return code >= 0 && code < BY_CODE.length ? BY_CODE[code] : null;
+    }
+
+    public static CallbackAction fromLegacyName(String name) {
+        for (CallbackAction action : values()) {
+            if (action.legacyName.equals(name)) {
+                return action;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,204 @@
+package ru.unithack.bot.service.command;
+
+import java.util.Arrays;
+import java.util.Base64;
+
+/**
+ * Компактные данные колбэка inline-кнопки.
+ * <p>
+ * Формат: байт версии, байт действия и до трех идентификаторов в varint,
+ * упакованные в base64url без паддинга. Кнопка с тремя идентификаторами занимает
+ * не больше 43 символов из 64 допустимых Telegram, остаток можно отдать под подпись или срок действия.
+ * Декодирование идет прямо по символам строки, без регулярных выражений и промежуточных массивов.
+ */
+public record CallbackData(CallbackAction action, int argCount, long arg0, long arg1, long arg2) {
+
+    public static final int VERSION = 1;
+    public static final int MAX_ARGS = 3;
+
+    // Telegram ограничивает callback_data 64 байтами
+    private static final int MAX_LENGTH = 64;
+    private static final Base64.Encoder ENCODER = Base64.getUrlEncoder().withoutPadding();
+    private static final byte[] SEXTETS = new byte[128];
+
+    static {
+        Arrays.fill(SEXTETS, (byte) -1);
+        String alphabet = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789-_";
+        for (int i = 0; i < alphabet.length(); i++) {
+            SEXTETS[alphabet.charAt(i)] = (byte) i;
+        }
+    }
+
+    /**
+     * Кодирует действие и его аргументы в строку для callbackData кнопки
+     */
+    public static String encode(CallbackAction action, long... args) {
+        if (args.length > MAX_ARGS) {
+            throw new IllegalArgumentException("Too many callback arguments: " + args.length);
+        }
+
+        byte[] buffer = new byte[2 + MAX_ARGS * 10];
+        int length = 0;
+        buffer[length++] = VERSION;
+        buffer[length++] = (byte) action.getCode();
+        for (long arg : args) {
+            long value = arg;
+            while ((value & ~0x7FL) != 0) {
+                buffer[length++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            buffer[length++] = (byte) value;
+        }
+
+        String encoded = ENCODER.encodeToString(Arrays.copyOf(buffer, length));
+        if (encoded.length() > MAX_LENGTH) {
+            throw new IllegalArgumentException("Callback data exceeds " + MAX_LENGTH + " bytes");
+        }
+        return encoded;
+    }
+
+    /**
+     * Декодирует данные колбэка
+     * @return null, если строка не является данными текущей версии
+     */
+    public static CallbackData decode(String data) {
+        if (data == null || data.isEmpty() || data.length() > MAX_LENGTH) {
+            return null;
+        }
+
+        Reader reader = new Reader(data);
+        if (reader.nextByte() != VERSION) {
+            return null;
+        }
+
+        CallbackAction action = CallbackAction.fromCode(reader.nextByte());
+        if (action == null) {
+            return null;
+        }
+
+        int count = 0;
+        long arg0 = 0;
+        long arg1 = 0;
+        long arg2 = 0;
+        while (reader.hasNextByte()) {
+            if (count == MAX_ARGS) {
+                return null;
+            }
+
+            long value = 0;
+            int shift = 0;
+            int b;
+            do {
+                b = reader.nextByte();
+                if (b < 0 || shift > 63) {
+                    return null;
+                }
+                value |= (long) (b & 0x7F) << shift;
+                shift += 7;
+            } while ((b & 0x80) != 0);
+
+            switch (count++) {
+                case 0 -> arg0 = value;
+                case 1 -> arg1 = value;
+                default -> arg2 = value;
+            }
+        }
+
+        return new CallbackData(action, count, arg0, arg1, arg2);
+    }
+
+    /**
+     * Декодирует данные колбэка в текущем или старом текстовом формате
+     * @return null, если данные не распознаны
+     */
+    public static CallbackData parse(String data) {
+        if (data == null) {
+            return null;
+        }
+        CallbackData callbackData = decode(data);
+        return callbackData != null ? callbackData : decodeLegacy(data);
+    }
+
+    /**
+     * Разбирает данные в старом текстовом формате action:arg1:arg2, которые остались
+     * на кнопках в сообщениях, отправленных до перехода на новый формат
+     * @return null, если действие неизвестно или аргумент не число
+     */
+    public static CallbackData decodeLegacy(String data) {
+        int separator = data.indexOf(':');
+        CallbackAction action = CallbackAction.fromLegacyName(separator < 0 ? data : data.substring(0, separator));
+        if (action == null) {
+            return null;
+        }
+
+        int count = 0;
+        long[] values = {0, 0, 0};
+        int position = separator;
+        while (position >= 0 && count < MAX_ARGS) {
+            int next = data.indexOf(':', position + 1);
+            String token = next < 0 ? data.substring(position + 1) : data.substring(position + 1, next);
+            if ("true".equals(token) || "false".equals(token)) {
+                values[count++] = "true".equals(token) ? 1 : 0;
+            } else {
+                try {
+                    values[count++] = Long.parseLong(token);
+                } catch (NumberFormatException e) {
+                    return null;
+                }
+            }
+            position = next;
+        }
+
+        return new CallbackData(action, count, values[0], values[1], values[2]);
+    }
+
+    public long arg(int index) {
+        if (index >= argCount) {
+            throw new IllegalArgumentException("Callback " + action + " has no argument " + index);
+        }
+        return switch (index) {
+            case 0 -> arg0;
+            case 1 -> arg1;
+            default -> arg2;
+        };
+    }
+
+    public boolean flag(int index) {
+        return arg(index) != 0;
+    }
+
+    /**
+     * Читает байты base64url прямо из строки
+     */
+    private static final class Reader {
+        private final String data;
+        private int position;
+        private int buffer;
+        private int bits;
+
+        private Reader(String data) {
+            this.data = data;
+        }
+
+        private boolean hasNextByte() {
+            return bits + (data.length() - position) * 6 >= 8;
+        }
+
+        private int nextByte() {
+            while (bits < 8) {
+                if (position >= data.length()) {
+                    return -1;
+                }
+                char c = data.charAt(position++);
+                int sextet = c < 128 ? SEXTETS[c] : -1;
+                if (sextet < 0) {
+                    return -1;
+                }
+                buffer = (buffer << 6) | sextet;
+                bits += 6;
+            }
+            bits -= 8;
+            return (buffer >>> bits) & 0xFF;
+        }
+    }
+}
@@ -0,0 +1,10 @@
+package ru.unithack.bot.service.command;
+
+@FunctionalInterface
+public interface CallbackHandler {
+
+    /**
+     * @param messageId сообщение с нажатой кнопкой, null если оно недоступно
+     */
+    void handle(Long chatId, Integer messageId, CallbackData data);
+}
@@ -0,0 +1,9 @@
+package ru.unithack.bot.service.command;
+
+import com.pengrad.telegrambot.model.Message;
+
+@FunctionalInterface
+public interface CommandHandler {
+
+    void handle(Message message, BotCommand command);
+}
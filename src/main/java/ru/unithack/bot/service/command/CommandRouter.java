@@ -0,0 +1,139 @@
+package ru.unithack.bot.service.command;
+
+import com.pengrad.telegrambot.model.Message;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import ru.unithack.bot.infrastructure.telegram.UpdatePriority;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Таблица команд и колбэков бота. Обработчик находится одним обращением к хеш-таблице,
+ * для каждой команды отдельно считаются время выполнения и количество ошибок.
+ * Вместе с обработчиком хранится приоритет, по которому диспетчер упорядочивает обновления.
+ */
+@Component
+public class CommandRouter {
+
+    private static final String TYPE_COMMAND = "command";
+    private static final String TYPE_CALLBACK = "callback";
+
+    private final Map<String, Route<CommandHandler>> commands = new ConcurrentHashMap<>();
+    private final Map<CallbackAction, Route<CallbackHandler>> callbacks = new EnumMap<>(CallbackAction.class);
+    private final MeterRegistry meterRegistry;
+
+    @Autowired
+    public CommandRouter(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * Регистрирует обработчик команды. Первое имя считается основным и используется в метриках,
+     * остальные - синонимы (например, /users для /list_users)
+     */
+    public void registerCommand(CommandHandler handler, UpdatePriority priority, String name, String... aliases) {
+        Route<CommandHandler> route = new Route<>(handler, priority, name, TYPE_COMMAND, meterRegistry);
+        commands.put(name, route);
+        for (String alias : aliases) {
+            commands.put(alias, route);
+        }
+    }
+
+    /**
+     * Регистрирует обработчик колбэка inline-кнопки
+     */
+    public void registerCallback(CallbackAction action, UpdatePriority priority, CallbackHandler handler) {
+        callbacks.put(action, new Route<>(handler, priority, action.getLegacyName(), TYPE_CALLBACK, meterRegistry));
+    }
+
+    /**
+     * Приоритет команды. Незарегистрированные команды относятся к просмотру
+     */
+    public UpdatePriority commandPriority(String name) {
+        Route<CommandHandler> route = commands.get(name);
+        return route != null ? route.priority : UpdatePriority.BROWSING;
+    }
+
+    /**
+     * Приоритет колбэка по его данным. Нераспознанные данные относятся к просмотру
+     * @param callbackData данные, уже декодированные {@link CallbackData#parse}, или null
+     */
+    public UpdatePriority callbackPriority(CallbackData callbackData) {
+        Route<CallbackHandler> route = callbackData != null ? callbacks.get(callbackData.action()) : null;
+        return route != null ? route.priority : UpdatePriority.BROWSING;
+    }
+
+    /**
+     * Выполняет команду
+     * @return false, если такая команда не зарегистрирована
+     */
+    public boolean dispatchCommand(Message message, BotCommand command) {
+        Route<CommandHandler> route = commands.get(command.name());
+        if (route == null) {
+            return false;
+        }
+
+        long start = System.nanoTime();
+        try {
+            route.handler.handle(message, command);
+        } catch (RuntimeException e) {
+            route.errors.increment();
+            throw e;
+        } finally {
+            route.latency.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+        return true;
+    }
+
+    /**
+     * Выполняет колбэк. Обработчик выбирается по действию из данных, декодированных при классификации
+     * @return false, если данные не распознаны или действие не зарегистрировано
+     */
+    public boolean dispatchCallback(Long chatId, Integer messageId, CallbackData callbackData) {
+        if (callbackData == null) {
+            return false;
+        }
+
+        Route<CallbackHandler> route = callbacks.get(callbackData.action());
+        if (route == null) {
+            return false;
+        }
+
+        long start = System.nanoTime();
+        try {
+            route.handler.handle(chatId, messageId, callbackData);
+        } catch (RuntimeException e) {
+            route.errors.increment();
+            throw e;
+        } finally {
+            route.latency.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+        return true;
+    }
+
+    private static final class Route<H> {
+        private final H handler;
+        private final UpdatePriority priority;
+        private final Timer latency;
+        private final Counter errors;
+
+        private Route(H handler, UpdatePriority priority, String name, String type, MeterRegistry meterRegistry) {
+            this.handler = handler;
+            this.priority = priority;
+            this.latency = Timer.builder("bot.command.latency")
+                    .tag("command", name)
+                    .tag("type", type)
+                    .register(meterRegistry);
+            this.errors = Counter.builder("bot.command.errors")
+                    .tag("command", name)
+                    .tag("type", type)
+                    .register(meterRegistry);
+        }
+    }
+}
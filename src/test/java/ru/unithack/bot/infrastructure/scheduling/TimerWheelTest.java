@@ -0,0 +1,137 @@
+package ru.unithack.bot.infrastructure.scheduling;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TimerWheelTest {
+
+    private static final long TICK_MILLIS = 1000;
+    private static final long BASE = 1_700_000_000_000L;
+    private static final long HORIZON_TICKS = 1L << 24;
+
+    private final AtomicLong clock = new AtomicLong(BASE);
+    private final List<String> fired = new CopyOnWriteArrayList<>();
+    private ExecutorService workers;
+    private TimerWheel wheel;
+
+    @BeforeEach
+    void setUp() {
+        workers = Executors.newSingleThreadExecutor();
+        wheel = new TimerWheel(TICK_MILLIS, workers, clock::get, new SimpleMeterRegistry());
+    }
+
+    @AfterEach
+    void tearDown() {
+        wheel.shutdown();
+    }
+
+    @Test
+    void firesOnDeadlineTick() throws Exception {
+        schedule("a", 5);
+
+        advanceTo(4);
+        assertTrue(fired.isEmpty());
+
+        advanceTo(5);
+        assertEquals(List.of("a"), fired);
+        assertFalse(wheel.isScheduled("a"));
+    }
+
+    @Test
+    void cascadesFromEveryLevel() throws Exception {
+        long[] deadlines = {70, 64 * 64 + 3, 64 * 64 * 64 + 5, HORIZON_TICKS - 1};
+        for (long deadline : deadlines) {
+            schedule("t" + deadline, deadline);
+        }
+
+        for (long deadline : deadlines) {
+            advanceTo(deadline - 1);
+            assertFalse(fired.contains("t" + deadline), "fired early: " + deadline);
+            advanceTo(deadline);
+            assertTrue(fired.contains("t" + deadline), "not fired: " + deadline);
+        }
+    }
+
+    @Test
+    void firesTimersBeyondHorizon() throws Exception {
+        long deadline = HORIZON_TICKS + 100;
+        schedule("far", deadline);
+
+        advanceTo(deadline - 1);
+        assertTrue(fired.isEmpty());
+
+        advanceTo(deadline);
+        assertEquals(List.of("far"), fired);
+    }
+
+    @Test
+    void cancelledTimerDoesNotFire() throws Exception {
+        schedule("near", 3);
+        schedule("upper", 64 * 64 + 1);
+        wheel.cancel("near");
+        wheel.cancel("upper");
+
+        assertFalse(wheel.isScheduled("near"));
+        advanceTo(64 * 64 + 1);
+        assertTrue(fired.isEmpty());
+    }
+
+    @Test
+    void reschedulingWithSameKeyReplacesTimer() throws Exception {
+        wheel.schedule("k", at(10), () -> fired.add("first"));
+        wheel.schedule("k", at(20), () -> fired.add("second"));
+
+        advanceTo(10);
+        assertTrue(fired.isEmpty());
+        advanceTo(20);
+        assertEquals(List.of("second"), fired);
+
+        // Перенос на более ранний срок тоже заменяет задачу
+        wheel.schedule("k", at(100), () -> fired.add("late"));
+        wheel.schedule("k", at(30), () -> fired.add("early"));
+        advanceTo(100);
+        assertEquals(List.of("second", "early"), fired);
+    }
+
+    @Test
+    void pastDeadlineFiresOnNextTick() throws Exception {
+        advanceTo(10);
+        schedule("late", 2);
+
+        advanceTo(11);
+        assertEquals(List.of("late"), fired);
+    }
+
+    private void schedule(String key, long tick) {
+        wheel.schedule(key, at(tick), () -> fired.add(key));
+    }
+
+    private static LocalDateTime at(long tick) {
+        return LocalDateTime.ofInstant(Instant.ofEpochMilli(BASE + tick * TICK_MILLIS), ZoneId.systemDefault());
+    }
+
+    /**
+     * Сдвигает часы, прогоняет тики и ждет, пока пул выполнит запущенные задачи
+     */
+    private void advanceTo(long tick) throws Exception {
+        clock.set(BASE + tick * TICK_MILLIS);
+        wheel.tick();
+        workers.submit(() -> { }).get(5, TimeUnit.SECONDS);
+    }
+}
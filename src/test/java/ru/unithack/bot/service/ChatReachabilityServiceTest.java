@@ -0,0 +1,92 @@
+package ru.unithack.bot.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import ru.unithack.bot.domain.projection.UserSnapshot;
+import ru.unithack.bot.infrastructure.repository.UserRepository;
+import ru.unithack.bot.infrastructure.telegram.TelegramSender;
+
+import java.util.Optional;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class ChatReachabilityServiceTest {
+
+    private static final long CHAT_ID = 42L;
+
+    @Mock
+    private UserRepository userRepository;
+    @Mock
+    private UserService userService;
+    @Mock
+    private UserSessionCache sessionCache;
+
+    private SimpleMeterRegistry meterRegistry;
+    private ChatReachabilityService service;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        service = new ChatReachabilityService(userRepository, userService, sessionCache, meterRegistry);
+    }
+
+    @Test
+    void inboundUpdateRestoresUnreachableChat() {
+        when(userService.findSnapshotByChatId(CHAT_ID)).thenReturn(Optional.of(snapshot(false)));
+        when(userRepository.updateReachable(CHAT_ID, true)).thenReturn(1);
+
+        service.onInboundUpdate(CHAT_ID);
+
+        verify(userRepository).updateReachable(CHAT_ID, true);
+        verify(sessionCache).invalidate(CHAT_ID);
+        assertEquals(1.0, meterRegistry.get("bot.chats.reachability").tag("change", "unblocked").counter().count());
+    }
+
+    @Test
+    void inboundUpdateFromReachableChatDoesNotWrite() {
+        when(userService.findSnapshotByChatId(CHAT_ID)).thenReturn(Optional.of(snapshot(true)));
+
+        service.onInboundUpdate(CHAT_ID);
+
+        verify(userRepository, never()).updateReachable(anyLong(), anyBoolean());
+        verify(sessionCache, never()).invalidate(CHAT_ID);
+    }
+
+    @Test
+    void blockedThenInboundUpdateMakesChatReachableAgain() {
+        when(userRepository.updateReachable(CHAT_ID, false)).thenReturn(1);
+        service.onChatUnreachable(new TelegramSender.ChatUnreachable(CHAT_ID, "Forbidden: bot was blocked by the user"));
+        // Снимок сбрасывается, чтобы следующее обновление увидело актуальную доступность
+        verify(sessionCache).invalidate(CHAT_ID);
+
+        when(userService.findSnapshotByChatId(CHAT_ID)).thenReturn(Optional.of(snapshot(false)));
+        when(userRepository.updateReachable(CHAT_ID, true)).thenReturn(1);
+        service.onInboundUpdate(CHAT_ID);
+
+        verify(userRepository).updateReachable(CHAT_ID, true);
+    }
+
+    @Test
+    void inboundUpdateFromUnknownChatIsIgnored() {
+        when(userService.findSnapshotByChatId(CHAT_ID)).thenReturn(Optional.empty());
+
+        service.onInboundUpdate(CHAT_ID);
+
+        verify(userRepository, never()).updateReachable(anyLong(), anyBoolean());
+    }
+
+    private static UserSnapshot snapshot(boolean reachable) {
+        return new UserSnapshot(1L, CHAT_ID, "Test User", "test", reachable, Set.of("USER"));
+    }
+}
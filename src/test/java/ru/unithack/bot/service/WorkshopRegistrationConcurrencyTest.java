@@ -0,0 +1,121 @@
+package ru.unithack.bot.service;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import ru.unithack.bot.domain.model.User;
+import ru.unithack.bot.domain.model.Workshop;
+import ru.unithack.bot.domain.model.WorkshopRegistration;
+import ru.unithack.bot.infrastructure.repository.UserRepository;
+import ru.unithack.bot.infrastructure.repository.WorkshopRegistrationRepository;
+import ru.unithack.bot.infrastructure.repository.WorkshopRepository;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Одновременная запись большого числа пользователей на один мастер-класс
+ */
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import(WorkshopService.class)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@TestPropertySource(properties = {
+        "spring.datasource.url=jdbc:h2:mem:registrations;DB_CLOSE_DELAY=-1;LOCK_TIMEOUT=30000",
+        "spring.datasource.driver-class-name=org.h2.Driver",
+        "spring.datasource.username=sa",
+        "spring.datasource.password=",
+        "spring.datasource.hikari.maximum-pool-size=32",
+        "spring.jpa.database-platform=org.hibernate.dialect.H2Dialect",
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "spring.jpa.show-sql=false"
+})
+class WorkshopRegistrationConcurrencyTest {
+
+    private static final int CAPACITY = 20;
+    private static final int USERS = 200;
+    private static final int ATTEMPTS_PER_USER = 2;
+    private static final int THREADS = 32;
+
+    @Autowired
+    private WorkshopService workshopService;
+
+    @Autowired
+    private WorkshopRepository workshopRepository;
+
+    @Autowired
+    private WorkshopRegistrationRepository registrationRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @MockitoBean
+    private NotificationService notificationService;
+
+    @MockitoBean
+    private WorkshopReminderService workshopReminderService;
+
+    @Test
+    void concurrentRegistrationsNeverOverbook() throws Exception {
+        Workshop workshop = new Workshop();
+        workshop.setTitle("Stress");
+        workshop.setDescription("Concurrent registrations");
+        workshop.setStartTime(LocalDateTime.now().plusDays(1));
+        workshop.setEndTime(LocalDateTime.now().plusDays(1).plusHours(2));
+        workshop.setCapacity(CAPACITY);
+        Workshop saved = workshopRepository.save(workshop);
+
+        List<User> users = new ArrayList<>();
+        for (int i = 0; i < USERS; i++) {
+            users.add(userRepository.save(new User()));
+        }
+
+        // Каждый пользователь нажимает кнопку записи несколько раз одновременно с остальными
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int attempt = 0; attempt < ATTEMPTS_PER_USER; attempt++) {
+            for (User user : users) {
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    return workshopService.registerParticipant(saved, user);
+                }));
+            }
+        }
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        executor.shutdown();
+
+        assertEquals(CAPACITY, registrationRepository.countRegisteredParticipants(saved));
+        assertEquals(USERS - CAPACITY, registrationRepository.countWaitlistParticipants(saved));
+
+        List<WorkshopRegistration> waitlist = registrationRepository
+                .findByWorkshopAndWaitlistTrueOrderByWaitlistSequenceAsc(saved);
+        Set<Integer> sequences = waitlist.stream()
+                .map(WorkshopRegistration::getWaitlistSequence)
+                .collect(Collectors.toSet());
+        assertEquals(IntStream.rangeClosed(1, USERS - CAPACITY).boxed().collect(Collectors.toSet()), sequences);
+
+        Workshop reloaded = workshopRepository.findById(saved.getId()).orElseThrow();
+        assertEquals(CAPACITY, reloaded.getRegisteredCount());
+        assertEquals(USERS - CAPACITY, reloaded.getWaitlistCount());
+    }
+}
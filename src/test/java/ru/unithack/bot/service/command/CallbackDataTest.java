@@ -0,0 +1,114 @@
+package ru.unithack.bot.service.command;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CallbackDataTest {
+
+    private static final long[] BOUNDARY_IDS = {
+            0, 1, 127, 128, 16383, 16384, Integer.MAX_VALUE, 1L << 56, Long.MAX_VALUE, -1, Long.MIN_VALUE
+    };
+
+    @Test
+    void roundTripsEveryActionWithBoundaryIds() {
+        for (CallbackAction action : CallbackAction.values()) {
+            for (long id : BOUNDARY_IDS) {
+                for (int count = 0; count <= CallbackData.MAX_ARGS; count++) {
+                    long[] args = new long[count];
+                    for (int i = 0; i < count; i++) {
+                        args[i] = i == 0 ? id : Long.MAX_VALUE - i;
+                    }
+
+                    String encoded = CallbackData.encode(action, args);
+                    CallbackData decoded = CallbackData.decode(encoded);
+
+                    assertEquals(action, decoded.action(), encoded);
+                    assertEquals(count, decoded.argCount(), encoded);
+                    for (int i = 0; i < count; i++) {
+                        assertEquals(args[i], decoded.arg(i), encoded);
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    void largestPayloadFitsTelegramLimit() {
+        for (CallbackAction action : CallbackAction.values()) {
+            String encoded = CallbackData.encode(action, Long.MIN_VALUE, -1, Long.MIN_VALUE);
+            assertTrue(encoded.getBytes(StandardCharsets.UTF_8).length <= 64, encoded);
+        }
+    }
+
+    @Test
+    void rejectsTooManyArguments() {
+        assertThrows(IllegalArgumentException.class,
+                () -> CallbackData.encode(CallbackAction.MARK_ATTENDANCE, 1, 2, 3, 4));
+    }
+
+    @Test
+    void flagsDecodeAsBooleans() {
+        CallbackData data = CallbackData.decode(CallbackData.encode(CallbackAction.MARK_ATTENDANCE, 5, 7, 1));
+        assertTrue(data.flag(2));
+        assertFalse(CallbackData.decode(CallbackData.encode(CallbackAction.USERS_PAGE, 5, 0)).flag(1));
+    }
+
+    @Test
+    void decodesLegacyFormat() {
+        for (CallbackAction action : CallbackAction.values()) {
+            CallbackData data = CallbackData.decodeLegacy(action.getLegacyName() + ":42");
+            assertEquals(action, data.action());
+            assertEquals(1, data.argCount());
+            assertEquals(42, data.arg(0));
+        }
+
+        CallbackData attendance = CallbackData.decodeLegacy("mark_attendance:12:34:true");
+        assertEquals(CallbackAction.MARK_ATTENDANCE, attendance.action());
+        assertEquals(3, attendance.argCount());
+        assertEquals(12, attendance.arg(0));
+        assertEquals(34, attendance.arg(1));
+        assertTrue(attendance.flag(2));
+
+        assertFalse(CallbackData.decodeLegacy("mark_attendance:12:34:false").flag(2));
+        assertEquals(0, CallbackData.decodeLegacy("register_workshop").argCount());
+    }
+
+    @Test
+    void legacyStringsAreNotMistakenForCurrentFormat() {
+        assertNull(CallbackData.decode("register_workshop:42"));
+        assertNull(CallbackData.decode("confirm_workshop:9223372036854775807"));
+    }
+
+    @Test
+    void rejectsMalformedData() {
+        assertNull(CallbackData.decode(null));
+        assertNull(CallbackData.decode(""));
+        assertNull(CallbackData.decode("A".repeat(65)));
+        assertNull(CallbackData.decodeLegacy("unknown_action:1"));
+        assertNull(CallbackData.decodeLegacy("register_workshop:abc"));
+        // Неизвестный код действия
+        assertNull(CallbackData.decode("AT8"));
+    }
+
+    @Test
+    void parseFallsBackToLegacyFormat() {
+        assertEquals(CallbackAction.CANCEL_WORKSHOP,
+                CallbackData.parse(CallbackData.encode(CallbackAction.CANCEL_WORKSHOP, 7)).action());
+        assertEquals(7, CallbackData.parse("cancel_workshop:7").arg(0));
+        assertNull(CallbackData.parse(null));
+        assertNull(CallbackData.parse("unknown_action:1"));
+    }
+
+    @Test
+    void argumentIndexOutOfRangeFails() {
+        CallbackData data = CallbackData.decode(CallbackData.encode(CallbackAction.REGISTER_WORKSHOP, 3));
+        assertThrows(IllegalArgumentException.class, () -> data.arg(1));
+    }
+}